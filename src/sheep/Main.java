@@ -7,6 +7,7 @@ import sheep.fun.Fibonacci;
 import sheep.fun.FibonacciConstants;
 import sheep.fun.FunException;
 import sheep.fun.Pascal;
+import sheep.parsing.CachingParser;
 import sheep.parsing.Parser;
 import sheep.parsing.SimpleParser;
 import sheep.ui.graphical.GUI;
@@ -44,7 +45,7 @@ public class Main {
 
         // Stage 2: Completion of basic Sheet functionality.
         ExpressionFactory factory = new CoreFactory();
-        Parser parser = new SimpleParser(factory);
+        Parser parser = new CachingParser(new SimpleParser(factory), 1024);
 
         Sheet sheet = new SheetBuilder(parser, factory.createEmpty())
                 .includeBuiltIn("life", factory.createConstant(42))
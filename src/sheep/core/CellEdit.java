@@ -0,0 +1,49 @@
+package sheep.core;
+
+/**
+ * A single replacement of a cell's value, as part of a batch of updates.
+ * Stores the row and column of the cell and the input to replace it with.
+ */
+public class CellEdit {
+    private final int row;
+    private final int column;
+    private final String input;
+
+    /**
+     * Construct a new cell edit.
+     *
+     * @param row The row index to update.
+     * @param column The column index to update.
+     * @param input The value as a string to replace within the sheet.
+     * @requires input != null
+     */
+    public CellEdit(int row, int column, String input) {
+        this.row = row;
+        this.column = column;
+        this.input = input;
+    }
+
+    /**
+     * The row index to update.
+     * @return The row index to update.
+     */
+    public int getRow() {
+        return row;
+    }
+
+    /**
+     * The column index to update.
+     * @return The column index to update.
+     */
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * The value as a string to replace within the sheet.
+     * @return The value as a string to replace within the sheet.
+     */
+    public String getInput() {
+        return input;
+    }
+}
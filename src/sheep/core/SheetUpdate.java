@@ -1,5 +1,9 @@
 package sheep.core;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 /**
  * Handles replacing the value of a cell with a given input.
  */
@@ -14,4 +18,22 @@ public interface SheetUpdate {
      * @return An {@link UpdateResponse} indicating success or failure with a message.
      */
     UpdateResponse update(int row, int column, String input);
+
+    /**
+     * To be called whenever one wishes to replace many cells' values at once.
+     * <p>
+     * By default, each edit is applied in order with {@link SheetUpdate#update(int, int, String)}.
+     * Implementations may instead apply the edits atomically, recalculating only once.
+     *
+     * @param edits The edits to apply, in order.
+     * @requires edits != null
+     * @return An {@link UpdateResponse} for each edit, in the same order as the edits.
+     */
+    default List<UpdateResponse> updateAll(Collection<CellEdit> edits) {
+        List<UpdateResponse> responses = new ArrayList<>(edits.size());
+        for (CellEdit edit : edits) {
+            responses.add(update(edit.getRow(), edit.getColumn(), edit.getInput()));
+        }
+        return responses;
+    }
 }
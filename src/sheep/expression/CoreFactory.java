@@ -7,13 +7,67 @@ import sheep.expression.basic.Reference;
 
 /**
  * An expression factory for the core expressions.
+ * An optimizing factory simplifies each operator as it is created, folding constant
+ * sub-expressions, flattening nested sums and products, and removing identity elements, so that
+ * the work is not repeated each time the expression is evaluated. Simplified expressions still
+ * render exactly as they were written.
+ * An interning factory hash-conses every reference, constant and operator it creates, so
+ * structurally equal expressions created by the same factory are a single shared instance.
+ * Interning takes a lock and a table lookup for every node created, and formulas stored in a
+ * sheet are shared by the sheet itself, so it is only worthwhile for expressions that are kept
+ * outside of a sheet.
  */
 public class CoreFactory implements ExpressionFactory {
 
+    /**
+     * Whether operators are simplified as they are created.
+     */
+    private final boolean optimizing;
+
+    /**
+     * Canonical instances of the expressions created by this factory, or null if expressions
+     * are not interned.
+     */
+    private final Interner interner;
+
     /**
      * Constructor without any additional details.
      */
-    public CoreFactory() {}
+    public CoreFactory() {
+        this(false);
+    }
+
+    /**
+     * Constructor for a factory that does not intern the expressions it creates.
+     *
+     * @param optimizing Whether operators should be simplified as they are created.
+     */
+    public CoreFactory(boolean optimizing) {
+        this(optimizing, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param optimizing Whether operators should be simplified as they are created.
+     * @param interning Whether structurally equal expressions created by this factory should be
+     *                  a single shared instance.
+     */
+    public CoreFactory(boolean optimizing, boolean interning) {
+        this.optimizing = optimizing;
+        this.interner = interning ? new Interner() : null;
+    }
+
+    /**
+     * The canonical instance of an expression, if this factory interns expressions.
+     *
+     * @param expression A newly created expression.
+     * @return The canonical instance of the expression, or the expression itself if this
+     * factory does not intern expressions.
+     */
+    private Expression intern(Expression expression) {
+        return this.interner == null ? expression : this.interner.intern(expression);
+    }
 
     /**
      * Creates an instance of Reference that stores the given identifier.
@@ -23,7 +77,7 @@ public class CoreFactory implements ExpressionFactory {
      * @requires identifier != "".
      **/
     public Expression createReference(String identifier) {
-        return new Reference(identifier);
+        return intern(new Reference(identifier));
     }
 
     /**
@@ -33,7 +87,7 @@ public class CoreFactory implements ExpressionFactory {
      * @return An instance of Constant that stores the given value.
      */
     public Expression createConstant(long value) {
-        return new Constant(value);
+        return intern(new Constant(value));
     }
 
     /**
@@ -67,29 +121,52 @@ public class CoreFactory implements ExpressionFactory {
                 throw new InvalidExpression("This is an invalid expression");
             }
         }
-        if (expressions.length > 0) {
-            switch (name) {
-                case "+" -> {
-                    return Arithmetic.plus(expressions);
-                }
-                case "-" -> {
-                    return Arithmetic.minus(expressions);
-                }
-                case "*" -> {
-                    return Arithmetic.times(expressions);
-                }
-                case "/" -> {
-                    return Arithmetic.divide(expressions);
-                }
-                case "<" -> {
-                    return Arithmetic.less(expressions);
-                }
-                case "=" -> {
-                    return Arithmetic.equal(expressions);
-                }
-                default -> throw new InvalidExpression("This is an invalid expression.");
+        if (expressions.length == 0) {
+            throw new InvalidExpression("It must contain at least one expression.");
+        }
+        if (!this.optimizing) {
+            return intern(operator(name, expressions));
+        }
+        Expression[] originals = new Expression[expressions.length];
+        Expression[] simplified = new Expression[expressions.length];
+        boolean changed = false;
+        for (int i = 0; i < expressions.length; i++) {
+            if (expressions[i] instanceof Simplified each) {
+                originals[i] = each.original();
+                simplified[i] = each.simplified();
+                changed = true;
+            } else {
+                originals[i] = expressions[i];
+                simplified[i] = expressions[i];
             }
         }
-        throw new InvalidExpression("It must contain at least one expression.");
+        Expression original = intern(operator(name, originals));
+        Expression result = (changed ? operator(name, simplified)
+                : (Arithmetic) original).simplify();
+        if (result == original) {
+            return original;
+        }
+        return intern(new Simplified(original, intern(result)));
+    }
+
+    /**
+     * Creates the Arithmetic subclass for the given operator name.
+     *
+     * @param name An identifier for the operator, e.g. +, *.
+     * @param expressions The arguments of the operator.
+     * @return An appropriate operator expression.
+     * @throws InvalidExpression If the operator name is unknown.
+     */
+    private static Arithmetic operator(String name, Expression[] expressions)
+            throws InvalidExpression {
+        return switch (name) {
+            case "+" -> Arithmetic.plus(expressions);
+            case "-" -> Arithmetic.minus(expressions);
+            case "*" -> Arithmetic.times(expressions);
+            case "/" -> Arithmetic.divide(expressions);
+            case "<" -> Arithmetic.less(expressions);
+            case "=" -> Arithmetic.equal(expressions);
+            default -> throw new InvalidExpression("This is an invalid expression.");
+        };
     }
 }
\ No newline at end of file
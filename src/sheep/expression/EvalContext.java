@@ -0,0 +1,76 @@
+package sheep.expression;
+
+import sheep.expression.basic.ErrorValue;
+import sheep.expression.basic.Reference;
+
+import java.util.Map;
+
+/**
+ * The context that expressions are evaluated to primitive numbers within.
+ * Evaluation through Expression.evalLong(EvalContext) returns plain longs rather than constant
+ * expressions, so numeric formulas can be evaluated without allocating. Evaluation that fails
+ * records an error value in the context instead, and the number returned alongside it is
+ * meaningless. Only the first error recorded is kept.
+ * A context is used for a single evaluation at a time, and is not safe to share between threads.
+ */
+public abstract class EvalContext {
+
+    /**
+     * The first error recorded by the current evaluation, or null if it has not failed.
+     */
+    private ErrorValue error = null;
+
+    /**
+     * The numeric value of the cell or built-in a reference refers to.
+     * If the reference does not resolve to a number, an error is recorded instead.
+     *
+     * @param reference The reference to resolve.
+     * @return The numeric value of the reference, or 0 if an error was recorded.
+     */
+    public abstract long valueOf(Reference reference);
+
+    /**
+     * The state to evaluate expressions that do not support primitive evaluation against.
+     *
+     * @return A mapping of references to the expression they hold.
+     */
+    public abstract Map<String, Expression> state();
+
+    /**
+     * Record that the evaluation has failed. Only the first error recorded is kept.
+     *
+     * @param error The reason the evaluation failed.
+     * @return 0, as a placeholder for the number that could not be calculated.
+     */
+    public long fail(ErrorValue error) {
+        if (this.error == null) {
+            this.error = error;
+        }
+        return 0;
+    }
+
+    /**
+     * Whether an error has been recorded by the current evaluation.
+     *
+     * @return True if the evaluation has failed.
+     */
+    public boolean failed() {
+        return this.error != null;
+    }
+
+    /**
+     * The first error recorded by the current evaluation.
+     *
+     * @return The error, or null if the evaluation has not failed.
+     */
+    public ErrorValue error() {
+        return this.error;
+    }
+
+    /**
+     * Forget any error recorded, so that the context can be used for another evaluation.
+     */
+    public void reset() {
+        this.error = null;
+    }
+}
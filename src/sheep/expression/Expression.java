@@ -1,7 +1,12 @@
 package sheep.expression;
 
+import sheep.expression.basic.Constant;
+import sheep.expression.basic.ErrorValue;
+import sheep.expression.basic.Reference;
+
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 
 /**
  * Value stored within spreadsheet cells.
@@ -16,8 +21,11 @@ public abstract class Expression {
      *  Expression expr = Arithmetic.plus(Arithmetic.minus(new Reference("A1"),
      *                                       new Reference("A2")), new Reference("B2"));
      *  expr.dependencies() // {"A1", "A2", "B2"}
+     * As expressions are immutable, implementations should compute the set once and return the
+     * same unmodifiable set on every call, so that asking for dependencies does not allocate.
      *
-     * @return A set containing all the transitive references depended upon by the expression.
+     * @return An unmodifiable set containing all the transitive references depended upon by the
+     * expression.
      */
     public abstract Set<String> dependencies();
 
@@ -40,6 +48,51 @@ public abstract class Expression {
      */
     public abstract Expression value(Map<String, Expression> state) throws TypeError;
 
+    /**
+     * Evaluate the expression to a primitive number, without allocating where possible.
+     * If the expression does not evaluate to a number, an error is recorded in the context.
+     * By default, this evaluates the expression against the state of the context, so subclasses
+     * only need to override it to avoid allocation.
+     *
+     * @param context The context to resolve references within and record errors to.
+     * @return The numeric value of the expression, or 0 if an error was recorded.
+     */
+    public long evalLong(EvalContext context) {
+        try {
+            Expression result = value(context.state());
+            if (result instanceof Constant constant) {
+                return constant.getValue();
+            }
+            if (result instanceof ErrorValue error) {
+                return context.fail(error);
+            }
+        } catch (TypeError e) {
+            // Reported as a value error below.
+        }
+        return context.fail(ErrorValue.VALUE);
+    }
+
+    /**
+     * The expression that is evaluated in place of this expression, which has the same value
+     * but may have a simpler structure. The abstract class, expression, returns itself by
+     * default.
+     *
+     * @return The expression to evaluate in place of this expression.
+     */
+    public Expression simplified() {
+        return this;
+    }
+
+    /**
+     * True if the expression contains a relative reference, so that its value depends upon the
+     * cell holding it. The abstract class, expression, returns false by default.
+     *
+     * @return true if the expression contains a relative reference.
+     */
+    public boolean isRelative() {
+        return false;
+    }
+
     /**
      * True if the expression is a reference. The abstract class, expression, should return false by
      * default. The method will be overwritten by subclasses that are references.
@@ -50,6 +103,33 @@ public abstract class Expression {
         return false;
     }
 
+    /**
+     * Copy the expression with each of its references replaced by the result of a function.
+     * Calling this function must not alter the current expression. Expressions without
+     * subexpressions other than references return themselves, and an expression is only copied
+     * if at least one of its references was replaced.
+     *
+     * @param replacement Maps each reference within the expression to its replacement.
+     * @return Either the expression itself or a copy with its references replaced.
+     */
+    public Expression rewrite(Function<Reference, Expression> replacement) {
+        return rewrite(replacement, null);
+    }
+
+    /**
+     * Copy the expression with each of its references replaced by the result of a function,
+     * interning every copied node and replacement, so that equal parts of copies share a single
+     * instance. Expressions with subexpressions other than references must override this method
+     * rather than rewrite(Function).
+     *
+     * @param replacement Maps each reference within the expression to its replacement.
+     * @param interner The interner to share copied nodes through, or null to not share them.
+     * @return Either the expression itself or a copy with its references replaced.
+     */
+    public Expression rewrite(Function<Reference, Expression> replacement, Interner interner) {
+        return this;
+    }
+
     /**
      * The string representation of the expression.
      *
@@ -0,0 +1,51 @@
+package sheep.expression;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Table of canonical instances of expressions, for hash-consing.
+ * Expressions are immutable, so structurally equal expressions can be replaced by a single
+ * shared instance. Interning an expression whose sub-expressions have already been interned
+ * only compares the sub-expressions by identity, so building a tree bottom-up through an
+ * interner takes time linear in its size.
+ * Instances are only held weakly, so an expression that is no longer used anywhere else is
+ * dropped from the table.
+ */
+public class Interner {
+
+    /**
+     * The canonical instance of each expression, weakly referenced so that the value does not
+     * keep its own key alive.
+     */
+    private final Map<Expression, WeakReference<Expression>> table = new WeakHashMap<>();
+
+    /**
+     * The canonical instance of an expression, which is the expression itself if no equal
+     * expression has been interned yet.
+     *
+     * @param expression The expression to intern.
+     * @return An expression equal to the given expression, shared with every other caller.
+     */
+    public synchronized Expression intern(Expression expression) {
+        WeakReference<Expression> existing = this.table.get(expression);
+        if (existing != null) {
+            Expression canonical = existing.get();
+            if (canonical != null) {
+                return canonical;
+            }
+        }
+        this.table.put(expression, new WeakReference<>(expression));
+        return expression;
+    }
+
+    /**
+     * The amount of distinct expressions currently interned.
+     *
+     * @return The size of the table.
+     */
+    public synchronized int size() {
+        return this.table.size();
+    }
+}
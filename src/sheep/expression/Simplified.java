@@ -0,0 +1,173 @@
+package sheep.expression;
+
+import sheep.expression.basic.Reference;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * An expression that is evaluated through a simplified form but rendered as it was written.
+ * Created by an optimizing CoreFactory, so that folding constants and removing identity elements
+ * never changes the formula shown to the user.
+ */
+class Simplified extends Expression {
+
+    /**
+     * The expression as it was written, used for rendering and dependencies.
+     */
+    private final Expression original;
+
+    /**
+     * An expression with the same value as the original, used for evaluation.
+     */
+    private final Expression simplified;
+
+    /**
+     * Constructor.
+     *
+     * @param original The expression as it was written.
+     * @param simplified An expression with the same value as the original.
+     */
+    Simplified(Expression original, Expression simplified) {
+        this.original = original;
+        this.simplified = simplified;
+    }
+
+    /**
+     * The expression as it was written.
+     *
+     * @return The original expression.
+     */
+    Expression original() {
+        return this.original;
+    }
+
+    /**
+     * The expression evaluated in place of the original.
+     *
+     * @return The simplified expression.
+     */
+    @Override
+    public Expression simplified() {
+        return this.simplified;
+    }
+
+    /**
+     * The references depended upon by the expression as it was written.
+     *
+     * @return A set containing all the transitive references of the original expression.
+     */
+    @Override
+    public Set<String> dependencies() {
+        return this.original.dependencies();
+    }
+
+    /**
+     * Evaluate the simplified expression to a numeric value.
+     *
+     * @return A long that represents the numeric value of the expression.
+     * @throws TypeError If the expression does not have a numeric value.
+     */
+    @Override
+    public long value() throws TypeError {
+        return this.simplified.value();
+    }
+
+    /**
+     * Evaluate the simplified expression.
+     *
+     * @param state A mapping of references to the expression they hold.
+     * @return The result of evaluating the simplified expression.
+     * @throws TypeError If a type error occurs in the process of evaluation.
+     */
+    @Override
+    public Expression value(Map<String, Expression> state) throws TypeError {
+        return this.simplified.value(state);
+    }
+
+    /**
+     * Evaluate the simplified expression to a primitive number.
+     *
+     * @param context The context to resolve references within and record errors to.
+     * @return The numeric value of the expression, or 0 if an error was recorded.
+     */
+    @Override
+    public long evalLong(EvalContext context) {
+        return this.simplified.evalLong(context);
+    }
+
+    /**
+     * Whether the expression contains a relative reference.
+     *
+     * @return true if the simplified expression contains a relative reference.
+     */
+    @Override
+    public boolean isRelative() {
+        return this.simplified.isRelative();
+    }
+
+    /**
+     * If two simplified expressions are equal to each other. Equality is defined by having equal
+     * original and simplified expressions.
+     *
+     * @param obj another instance to compare against.
+     * @return true if the other object is an equal simplified expression.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof Simplified other) {
+            return other.original.equals(this.original)
+                    && other.simplified.equals(this.simplified);
+        }
+        return false;
+    }
+
+    /**
+     * A hashcode method that respects the equals(Object) method.
+     *
+     * @return An appropriate hashcode value for this instance.
+     */
+    @Override
+    public int hashCode() {
+        return this.original.hashCode() * 17 + this.simplified.hashCode();
+    }
+
+    /**
+     * Replace the references within both the original and the simplified expression.
+     *
+     * @param replacement Maps each reference within the expression to its replacement.
+     * @param interner The interner to share copied nodes through, or null to not share them.
+     * @return Either the expression itself or a copy with its references replaced.
+     */
+    @Override
+    public Expression rewrite(Function<Reference, Expression> replacement, Interner interner) {
+        Expression original = this.original.rewrite(replacement, interner);
+        Expression simplified = this.simplified.rewrite(replacement, interner);
+        if (original == this.original && simplified == this.simplified) {
+            return this;
+        }
+        Expression copy = new Simplified(original, simplified);
+        return interner == null ? copy : interner.intern(copy);
+    }
+
+    /**
+     * The string representation of the expression as it was written.
+     *
+     * @return the string representation of the original expression.
+     */
+    @Override
+    public String render() {
+        return this.original.render();
+    }
+
+    /**
+     * String representation of the expression as it was written.
+     *
+     * @return String representation of the original expression.
+     */
+    @Override
+    public String toString() {
+        return this.original.toString();
+    }
+}
@@ -1,10 +1,15 @@
 package sheep.expression.arithmetic;
 
+import sheep.expression.EvalContext;
 import sheep.expression.Expression;
+import sheep.expression.Interner;
 import sheep.expression.TypeError;
 import sheep.expression.basic.Constant;
+import sheep.expression.basic.ErrorValue;
+import sheep.expression.basic.Reference;
 
 import java.util.*;
+import java.util.function.Function;
 
 /**
  * An arithmetic expression.
@@ -12,6 +17,11 @@ import java.util.*;
  */
 public abstract class Arithmetic extends Expression {
 
+    /**
+     * Operators ordered from loosest to tightest binding, as they are parsed.
+     */
+    private static final String PRECEDENCE = "=<+-*/";
+
     /**
      * Operator passed in by the constructor.
      */
@@ -22,6 +32,22 @@ public abstract class Arithmetic extends Expression {
      */
     private final Expression[] arguments;
 
+    /**
+     * The union of the dependencies of every sub-expression, computed once on construction.
+     */
+    private final Set<String> dependencies;
+
+    /**
+     * Whether any sub-expression is a relative reference, so that the value of the expression
+     * depends upon the cell holding it.
+     */
+    private final boolean relative;
+
+    /**
+     * Structural hash code, computed once on construction.
+     */
+    private final int hash;
+
     /**
      * Constructor
      *
@@ -33,16 +59,63 @@ public abstract class Arithmetic extends Expression {
 
         this.operator = operator;
         this.arguments = arguments;
+        this.dependencies = union(arguments);
+        boolean relative = false;
+        for (Expression argument : arguments) {
+            relative |= argument.isRelative();
+        }
+        this.relative = relative;
+        this.hash = operator.hashCode() * 31 + Arrays.hashCode(arguments);
+    }
+
+    /**
+     * The union of the dependencies of a sequence of sub-expressions.
+     * Where at most one sub-expression has dependencies its set is shared rather than copied.
+     *
+     * @param arguments A sequence of sub-expressions.
+     * @return An unmodifiable set of the dependencies of every sub-expression.
+     */
+    private static Set<String> union(Expression[] arguments) {
+        Set<String> only = Set.of();
+        Set<String> union = null;
+        for (Expression argument : arguments) {
+            Set<String> dependencies = argument.dependencies();
+            if (dependencies.isEmpty()) {
+                continue;
+            }
+            if (union != null) {
+                union.addAll(dependencies);
+            } else if (only.isEmpty()) {
+                only = dependencies;
+            } else {
+                union = new HashSet<>(only);
+                union.addAll(dependencies);
+            }
+        }
+        return union == null ? only : Set.copyOf(union);
     }
 
     /**
      * Constructs a new addition (plus) operation.
+     * Sums of two references, of a reference and a constant, and of three or more references
+     * are specialised, so that they evaluate without looping over their arguments.
      *
      * @param arguments A plus expression.
      * @return arguments.length > 0
      * @requires arguments.length > 0
      */
     public static Arithmetic plus(Expression[] arguments) {
+        if (arguments.length == 2 && isPair(arguments, Reference.class, Reference.class)) {
+            return new PlusReferences(arguments);
+        }
+        if (arguments.length == 2 && (isPair(arguments, Reference.class, Constant.class)
+                || isPair(arguments, Constant.class, Reference.class))) {
+            return new PlusConstant(arguments);
+        }
+        if (arguments.length > 2 && Arrays.stream(arguments)
+                .allMatch(argument -> argument.getClass() == Reference.class)) {
+            return new SumReferences(arguments);
+        }
         return new Plus(arguments);
     }
 
@@ -64,9 +137,27 @@ public abstract class Arithmetic extends Expression {
      * @requires arguments.length > 0
      */
     public static Arithmetic times(Expression[] arguments) {
+        if (arguments.length == 2 && (isPair(arguments, Constant.class, Reference.class)
+                || isPair(arguments, Reference.class, Constant.class))) {
+            return new TimesConstant(arguments);
+        }
         return new Times(arguments);
     }
 
+    /**
+     * Whether a pair of sub-expressions are exactly of the given classes, in order.
+     *
+     * @param arguments A pair of sub-expressions.
+     * @param first The class of the first sub-expression.
+     * @param second The class of the second sub-expression.
+     * @return True if the sub-expressions are instances of the classes and not of subclasses.
+     * @requires arguments.length == 2
+     */
+    private static boolean isPair(Expression[] arguments, Class<? extends Expression> first,
+                                  Class<? extends Expression> second) {
+        return arguments[0].getClass() == first && arguments[1].getClass() == second;
+    }
+
     /**
      * Constructs a new division (divide) operation.
      *
@@ -103,44 +194,319 @@ public abstract class Arithmetic extends Expression {
     /**
      * Dependencies of the arithmetic expression.
      * The dependencies of an arithmetic expression are the union of all sub-expressions.
+     * The union is computed once, when the expression is constructed.
      *
-     * @return A set containing the union of all sub-expression dependencies.
+     * @return An unmodifiable set containing the union of all sub-expression dependencies.
      */
     public Set<String> dependencies() {
-        Set<String> subDependency = new HashSet<>();
-        for (Expression expression : this.arguments) {
-            subDependency.addAll(expression.dependencies());
-        }
-        return subDependency;
+        return this.dependencies;
     }
 
     /**
      * Result of evaluating this expression.
+     * If a sub-expression evaluates to an error, the result is the first such error. Otherwise,
+     * if a sub-expression does not evaluate to a constant, the result is ErrorValue.VALUE.
      *
      * @param state - A mapping of references to the expression they hold.
-     * @return A constant expression of the result.
-     * @throws TypeError If any of the sub-expressions cannot be converted to a numeric value.
+     * @return A constant expression of the result, or an error value.
+     * @throws TypeError If a sub-expression throws a type error while being evaluated.
      */
     public Expression value(Map<String, Expression> state) throws TypeError {
         long[] numbers = new long[this.arguments.length];
         for (int i = 0; i < this.arguments.length; i++) {
-            try {
-                numbers[i] = this.arguments[i].value(state).value();
-            } catch (TypeError e) {
-                throw new TypeError("Cannot convert to numeric value");
+            Expression result = this.arguments[i].value(state);
+            if (!(result instanceof Constant constant)) {
+                return notNumber(result);
+            }
+            numbers[i] = constant.getValue();
+        }
+        return result(numbers);
+    }
+
+    /**
+     * The result of an operation with a sub-expression that did not evaluate to a constant.
+     *
+     * @param result The result of evaluating the sub-expression.
+     * @return The result itself if it is an error, otherwise ErrorValue.VALUE.
+     */
+    protected static Expression notNumber(Expression result) {
+        return result instanceof ErrorValue ? result : ErrorValue.VALUE;
+    }
+
+    /**
+     * Evaluate the expression to a primitive number, without allocating.
+     * The arguments are evaluated in order and folded together with combine(long, long). If an
+     * argument records an error, evaluation stops, so the first error is kept as with
+     * value(Map).
+     *
+     * @param context The context to resolve references within and record errors to.
+     * @return The numeric value of the expression, or 0 if an error was recorded.
+     */
+    @Override
+    public long evalLong(EvalContext context) {
+        long result = this.arguments[0].evalLong(context);
+        for (int i = 1; i < this.arguments.length; i++) {
+            if (context.failed()) {
+                return 0;
+            }
+            result = combine(result, this.arguments[i].evalLong(context));
+        }
+        return result;
+    }
+
+    /**
+     * Combine the result of the operation so far with the next number.
+     * Operations that are a left fold over their arguments override this to avoid allocation.
+     *
+     * @param left The result of the operation over the preceding numbers.
+     * @param right The next number.
+     * @return The result of the operation over the preceding numbers and the next number.
+     */
+    protected long combine(long left, long right) {
+        return perform(new long[] {left, right});
+    }
+
+    /**
+     * The operator of the operation, one of +, -, *, /, &lt; and =.
+     *
+     * @return The operator passed in by the constructor.
+     */
+    public String getOperator() {
+        return this.operator;
+    }
+
+    /**
+     * The amount of sub-expressions the operation is performed upon.
+     *
+     * @return The amount of arguments.
+     */
+    public int argumentCount() {
+        return this.arguments.length;
+    }
+
+    /**
+     * A sub-expression the operation is performed upon.
+     *
+     * @param index The index of the sub-expression.
+     * @return The sub-expression at the index.
+     * @requires 0 &lt;= index &lt; argumentCount().
+     */
+    public Expression argument(int index) {
+        return this.arguments[index];
+    }
+
+    /**
+     * The result of the arithmetic operation over a list of numbers.
+     * Operations that can fail for some numbers override this to return an error value.
+     *
+     * @param numbers A list of numbers to perform the operation upon.
+     * @return A constant expression of the result, or an error value.
+     */
+    protected Expression result(long[] numbers) {
+        return new Constant(perform(numbers));
+    }
+
+
+    /**
+     * Whether any sub-expression is a relative reference.
+     *
+     * @return True if the value of the expression depends upon the cell holding it.
+     */
+    @Override
+    public boolean isRelative() {
+        return this.relative;
+    }
+
+    /**
+     * If two arithmetic expressions are equal to each other. Equality is defined by being the
+     * same operation upon equal sub-expressions, in the same order.
+     *
+     * @param obj another instance to compare against.
+     * @return true if the other object is a structurally equal arithmetic expression.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (obj instanceof Arithmetic other) {
+            return other.hash == this.hash && other.operator.equals(this.operator)
+                    && Arrays.equals(other.arguments, this.arguments);
+        }
+        return false;
+    }
+
+    /**
+     * A hashcode method that respects the equals(Object) method.
+     *
+     * @return An appropriate hashcode value for this instance.
+     */
+    @Override
+    public int hashCode() {
+        return this.hash;
+    }
+
+    /**
+     * Copy the expression with each of its references replaced by the result of a function.
+     * The copy is the same operation as this expression, applied to the rewritten
+     * sub-expressions.
+     *
+     * @param replacement Maps each reference within the expression to its replacement.
+     * @param interner The interner to share copied nodes through, or null to not share them.
+     * @return Either the expression itself or a copy with its references replaced.
+     */
+    @Override
+    public Expression rewrite(Function<Reference, Expression> replacement, Interner interner) {
+        Expression[] rewritten = null;
+        for (int i = 0; i < this.arguments.length; i++) {
+            Expression argument = this.arguments[i].rewrite(replacement, interner);
+            if (argument != this.arguments[i] && rewritten == null) {
+                rewritten = this.arguments.clone();
+            }
+            if (rewritten != null) {
+                rewritten[i] = argument;
             }
         }
+        if (rewritten == null) {
+            return this;
+        }
+        Expression copy = create(this.operator, rewritten);
+        return interner == null ? copy : interner.intern(copy);
+    }
+
+    /**
+     * Constructs a new operation of the same kind as an existing operation.
+     *
+     * @param operator The operator of an existing operation.
+     * @param arguments A sequence of sub-expressions to perform the operation upon.
+     * @return A new operation with the given operator.
+     * @requires arguments.length > 0
+     */
+    private static Arithmetic create(String operator, Expression[] arguments) {
+        return switch (operator) {
+            case "+" -> plus(arguments);
+            case "-" -> minus(arguments);
+            case "*" -> times(arguments);
+            case "<" -> less(arguments);
+            case "=" -> equal(arguments);
+            case "/" -> divide(arguments);
+            default -> throw new IllegalStateException("Unknown operator " + operator);
+        };
+    }
+
+    /**
+     * An expression that evaluates to the same result as this expression with less work,
+     * assuming that the sub-expressions have already been simplified.
+     * <ul>
+     *     <li>An operation upon only constants is folded into a single constant, unless it
+     *     would divide by zero.</li>
+     *     <li>Sums and products nested within a sum or product are flattened into it, and their
+     *     constant arguments are folded together.</li>
+     *     <li>Constant subtrahends are folded together.</li>
+     *     <li>Identity elements, such as "+ 0", "- 0", "* 1" and "/ 1", are removed.</li>
+     * </ul>
+     * An operation that is left with a single argument is replaced by that argument only if it
+     * is numeric, i.e. a constant or another operation, so that errors are unchanged.
+     *
+     * @return Either this expression or a simpler expression with the same value.
+     */
+    public Expression simplify() {
+        long[] numbers = new long[this.arguments.length];
+        boolean constant = true;
+        for (int i = 0; i < this.arguments.length && constant; i++) {
+            if (this.arguments[i] instanceof Constant number) {
+                numbers[i] = number.getValue();
+            } else {
+                constant = false;
+            }
+        }
+        if (constant) {
+            Expression folded = result(numbers);
+            return folded instanceof Constant ? folded : this;
+        }
         return switch (this.operator) {
-            case "+" -> new Constant(plus(this.arguments).perform(numbers));
-            case "-" -> new Constant(minus(this.arguments).perform(numbers));
-            case "*" -> new Constant(times(this.arguments).perform(numbers));
-            case "<" -> new Constant(less(this.arguments).perform(numbers));
-            case "=" -> new Constant(equal(this.arguments).perform(numbers));
-            case "/" -> new Constant(divide(this.arguments).perform(numbers));
-            default -> new Constant(perform(numbers));
+            case "+" -> simplifyAssociative(0);
+            case "*" -> simplifyAssociative(1);
+            case "-" -> simplifyTail(0, true);
+            case "/" -> simplifyTail(1, false);
+            default -> this;
         };
     }
 
+    /**
+     * Simplify an associative and commutative operation, flattening nested operations of the
+     * same kind and folding every constant argument into one.
+     *
+     * @param identity The identity element of the operation.
+     * @return Either this expression or a simpler expression with the same value.
+     */
+    private Expression simplifyAssociative(long identity) {
+        List<Expression> flat = new ArrayList<>(this.arguments.length);
+        long folded = identity;
+        for (Expression argument : this.arguments) {
+            Expression[] nested = argument instanceof Arithmetic arithmetic
+                    && arithmetic.operator.equals(this.operator)
+                    ? arithmetic.arguments : new Expression[] {argument};
+            for (Expression each : nested) {
+                if (each instanceof Constant number) {
+                    folded = combine(folded, number.getValue());
+                } else {
+                    flat.add(each);
+                }
+            }
+        }
+        if (folded != identity) {
+            flat.add(new Constant(folded));
+        }
+        return rebuild(flat);
+    }
+
+    /**
+     * Simplify an operation that is only associative after its first argument, folding the
+     * constant arguments after the first into one.
+     *
+     * @param identity The identity element of the operation, as applied after the first
+     *                 argument.
+     * @param fold Whether constants after the first argument may be folded together, otherwise
+     *             only identity elements are removed.
+     * @return Either this expression or a simpler expression with the same value.
+     */
+    private Expression simplifyTail(long identity, boolean fold) {
+        List<Expression> rest = new ArrayList<>(this.arguments.length);
+        rest.add(this.arguments[0]);
+        long folded = identity;
+        for (int i = 1; i < this.arguments.length; i++) {
+            if (!(this.arguments[i] instanceof Constant number)) {
+                rest.add(this.arguments[i]);
+            } else if (fold) {
+                folded = folded + number.getValue();
+            } else if (number.getValue() != identity) {
+                rest.add(number);
+            }
+        }
+        if (folded != identity) {
+            rest.add(new Constant(folded));
+        }
+        return rebuild(rest);
+    }
+
+    /**
+     * Construct an operation of the same kind as this upon the given arguments, or return the
+     * only argument if it is numeric.
+     *
+     * @param arguments The simplified arguments of the operation.
+     * @return Either this expression, if nothing has changed, or a simpler expression.
+     */
+    private Expression rebuild(List<Expression> arguments) {
+        if (arguments.size() == 1 && (arguments.get(0) instanceof Arithmetic
+                || arguments.get(0) instanceof Constant)) {
+            return arguments.get(0);
+        }
+        if (arguments.equals(Arrays.asList(this.arguments))) {
+            return this;
+        }
+        return create(this.operator, arguments.toArray(new Expression[0]));
+    }
 
     /**
      * Perform the arithmetic operation over a list of numbers.
@@ -164,19 +530,25 @@ public abstract class Arithmetic extends Expression {
     /**
      * The string representation of the expression.
      * For arithmetic, this is the sequence of sub-expressions joined by the operator node.
+     * Sub-expressions that are arithmetic with an operator binding no tighter than this one are
+     * wrapped in parentheses, so that the result parses back to the same expression.
      *
      * @return the string representation of the expression.
      */
     public String render() {
-        String expression = "";
+        StringBuilder expression = new StringBuilder();
         for (int i = 0; i < this.arguments.length; i++) {
-            if (i == 0) {
-                expression = this.arguments[0].render();
+            if (i > 0) {
+                expression.append(' ').append(this.operator).append(' ');
+            }
+            if (this.arguments[i] instanceof Arithmetic argument
+                    && PRECEDENCE.indexOf(argument.operator) <= PRECEDENCE.indexOf(this.operator)) {
+                expression.append('(').append(argument.render()).append(')');
             } else {
-                expression = "%s %s %s".formatted(expression, operator, this.arguments[i].render());
+                expression.append(this.arguments[i].render());
             }
         }
-        return expression;
+        return expression.toString();
     }
 
     /**
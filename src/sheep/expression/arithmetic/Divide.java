@@ -1,6 +1,8 @@
 package sheep.expression.arithmetic;
 
+import sheep.expression.EvalContext;
 import sheep.expression.Expression;
+import sheep.expression.basic.ErrorValue;
 
 /**
  * A division operation.
@@ -17,6 +19,23 @@ class Divide extends Arithmetic {
         super("/", arguments);
     }
 
+    /**
+     * The result of integer division over the list of numbers, or ErrorValue.DIV_ZERO if any
+     * number after the first is zero.
+     *
+     * @param numbers A list of numbers to perform the operation upon.
+     * @return A constant expression of the result, or an error value.
+     */
+    @Override
+    protected Expression result(long[] numbers) {
+        for (int i = 1; i < numbers.length; i++) {
+            if (numbers[i] == 0) {
+                return ErrorValue.DIV_ZERO;
+            }
+        }
+        return super.result(numbers);
+    }
+
     /**
      * Perform integer division over the list of arguments.
      *
@@ -34,4 +53,33 @@ class Divide extends Arithmetic {
         }
         return number;
     }
+
+    /**
+     * Evaluate the division to a primitive number, without allocating.
+     * Every argument is evaluated before division by zero is reported, so that an error within
+     * an argument takes precedence, as with value(Map).
+     *
+     * @param context The context to resolve references within and record errors to.
+     * @return The result of division, or 0 if an error was recorded.
+     */
+    @Override
+    public long evalLong(EvalContext context) {
+        long number = argument(0).evalLong(context);
+        boolean zero = false;
+        for (int i = 1; i < argumentCount(); i++) {
+            if (context.failed()) {
+                return 0;
+            }
+            long divisor = argument(i).evalLong(context);
+            if (divisor == 0) {
+                zero = true;
+            } else if (!zero) {
+                number = number / divisor;
+            }
+        }
+        if (zero && !context.failed()) {
+            return context.fail(ErrorValue.DIV_ZERO);
+        }
+        return number;
+    }
 }
@@ -1,5 +1,6 @@
 package sheep.expression.arithmetic;
 
+import sheep.expression.EvalContext;
 import sheep.expression.Expression;
 
 /**
@@ -37,4 +38,25 @@ class Equal extends Arithmetic {
         }
         return 1;
     }
+
+    /**
+     * Evaluate the comparison to a primitive number, without allocating.
+     *
+     * @param context The context to resolve references within and record errors to.
+     * @return 1 if all arguments are equal, 0 otherwise or if an error was recorded.
+     */
+    @Override
+    public long evalLong(EvalContext context) {
+        long first = argument(0).evalLong(context);
+        boolean equal = true;
+        for (int i = 1; i < argumentCount(); i++) {
+            if (context.failed()) {
+                return 0;
+            }
+            if (argument(i).evalLong(context) != first) {
+                equal = false;
+            }
+        }
+        return equal ? 1 : 0;
+    }
 }
@@ -1,5 +1,6 @@
 package sheep.expression.arithmetic;
 
+import sheep.expression.EvalContext;
 import sheep.expression.Expression;
 
 /**
@@ -38,4 +39,28 @@ class Less extends Arithmetic {
         }
         return 1L;
     }
+
+    /**
+     * Evaluate the comparison to a primitive number, without allocating.
+     *
+     * @param context The context to resolve references within and record errors to.
+     * @return 1 if all arguments are in increasing order, 0 otherwise or if an error was
+     * recorded.
+     */
+    @Override
+    public long evalLong(EvalContext context) {
+        long previous = argument(0).evalLong(context);
+        boolean increasing = true;
+        for (int i = 1; i < argumentCount(); i++) {
+            if (context.failed()) {
+                return 0;
+            }
+            long next = argument(i).evalLong(context);
+            if (previous >= next) {
+                increasing = false;
+            }
+            previous = next;
+        }
+        return increasing ? 1 : 0;
+    }
 }
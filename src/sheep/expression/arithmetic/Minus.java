@@ -34,4 +34,16 @@ class Minus extends Arithmetic {
         }
         return number;
     }
+
+    /**
+     * Combine the result so far with the next number.
+     *
+     * @param left The result of minus over the preceding numbers.
+     * @param right The next number.
+     * @return The result of minus over the preceding numbers and the next number.
+     */
+    @Override
+    protected long combine(long left, long right) {
+        return left - right;
+    }
 }
@@ -0,0 +1,73 @@
+package sheep.expression.arithmetic;
+
+import sheep.expression.EvalContext;
+import sheep.expression.Expression;
+import sheep.expression.TypeError;
+import sheep.expression.basic.Constant;
+import sheep.expression.basic.Reference;
+
+import java.util.Map;
+
+/**
+ * A plus operation upon exactly two references, such as A1 + B1.
+ * Evaluates both references directly, without looping over the arguments.
+ */
+class PlusReferences extends Plus {
+
+    /**
+     * The first reference.
+     */
+    private final Reference left;
+
+    /**
+     * The second reference.
+     */
+    private final Reference right;
+
+    /**
+     * Constructs a new plus expression upon two references.
+     *
+     * @param arguments Two references to add together.
+     * @requires arguments.length == 2, both arguments are references.
+     */
+    PlusReferences(Expression[] arguments) {
+        super(arguments);
+        this.left = (Reference) arguments[0];
+        this.right = (Reference) arguments[1];
+    }
+
+    /**
+     * The sum of the values of both references.
+     *
+     * @param state A mapping of references to the expression they hold.
+     * @return A constant expression of the sum, or an error value.
+     * @throws TypeError If a reference throws a type error while being evaluated.
+     */
+    @Override
+    public Expression value(Map<String, Expression> state) throws TypeError {
+        Expression left = this.left.value(state);
+        if (!(left instanceof Constant first)) {
+            return notNumber(left);
+        }
+        Expression right = this.right.value(state);
+        if (!(right instanceof Constant second)) {
+            return notNumber(right);
+        }
+        return new Constant(first.getValue() + second.getValue());
+    }
+
+    /**
+     * The sum of the values of both references, as resolved by the context.
+     *
+     * @param context The context to resolve references within and record errors to.
+     * @return The sum, or 0 if an error was recorded.
+     */
+    @Override
+    public long evalLong(EvalContext context) {
+        long left = context.valueOf(this.left);
+        if (context.failed()) {
+            return 0;
+        }
+        return left + context.valueOf(this.right);
+    }
+}
@@ -0,0 +1,73 @@
+package sheep.expression.arithmetic;
+
+import sheep.expression.EvalContext;
+import sheep.expression.Expression;
+import sheep.expression.TypeError;
+import sheep.expression.basic.Constant;
+import sheep.expression.basic.Reference;
+
+import java.util.Map;
+
+/**
+ * A plus operation upon three or more references, such as A1 + A2 + A3.
+ * Accumulates the values of the references directly, without collecting them into an array.
+ */
+class SumReferences extends Plus {
+
+    /**
+     * The references to add together.
+     */
+    private final Reference[] references;
+
+    /**
+     * Constructs a new plus expression upon references.
+     *
+     * @param arguments The references to add together.
+     * @requires arguments.length > 0, every argument is a reference.
+     */
+    SumReferences(Expression[] arguments) {
+        super(arguments);
+        this.references = new Reference[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            this.references[i] = (Reference) arguments[i];
+        }
+    }
+
+    /**
+     * The sum of the values of every reference.
+     *
+     * @param state A mapping of references to the expression they hold.
+     * @return A constant expression of the sum, or the first error value.
+     * @throws TypeError If a reference throws a type error while being evaluated.
+     */
+    @Override
+    public Expression value(Map<String, Expression> state) throws TypeError {
+        long sum = 0;
+        for (Reference reference : this.references) {
+            Expression value = reference.value(state);
+            if (!(value instanceof Constant number)) {
+                return notNumber(value);
+            }
+            sum += number.getValue();
+        }
+        return new Constant(sum);
+    }
+
+    /**
+     * The sum of the values of every reference, as resolved by the context.
+     *
+     * @param context The context to resolve references within and record errors to.
+     * @return The sum, or 0 if an error was recorded.
+     */
+    @Override
+    public long evalLong(EvalContext context) {
+        long sum = 0;
+        for (Reference reference : this.references) {
+            sum += context.valueOf(reference);
+            if (context.failed()) {
+                return 0;
+            }
+        }
+        return sum;
+    }
+}
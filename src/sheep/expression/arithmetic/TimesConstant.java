@@ -0,0 +1,67 @@
+package sheep.expression.arithmetic;
+
+import sheep.expression.EvalContext;
+import sheep.expression.Expression;
+import sheep.expression.TypeError;
+import sheep.expression.basic.Constant;
+import sheep.expression.basic.Reference;
+
+import java.util.Map;
+
+/**
+ * A times operation upon a constant and a reference, in either order, such as 2 * A1.
+ * The value of the reference is multiplied by the constant directly, without looping over the
+ * arguments.
+ */
+class TimesConstant extends Times {
+
+    /**
+     * The reference.
+     */
+    private final Reference reference;
+
+    /**
+     * The value of the constant.
+     */
+    private final long constant;
+
+    /**
+     * Constructs a new times expression upon a reference and a constant.
+     *
+     * @param arguments A reference and a constant, in either order.
+     * @requires arguments.length == 2, one argument is a reference and the other a constant.
+     */
+    TimesConstant(Expression[] arguments) {
+        super(arguments);
+        int index = arguments[0] instanceof Reference ? 0 : 1;
+        this.reference = (Reference) arguments[index];
+        this.constant = ((Constant) arguments[1 - index]).getValue();
+    }
+
+    /**
+     * The value of the reference times the constant.
+     *
+     * @param state A mapping of references to the expression they hold.
+     * @return A constant expression of the product, or an error value.
+     * @throws TypeError If the reference throws a type error while being evaluated.
+     */
+    @Override
+    public Expression value(Map<String, Expression> state) throws TypeError {
+        Expression value = this.reference.value(state);
+        if (!(value instanceof Constant number)) {
+            return notNumber(value);
+        }
+        return new Constant(number.getValue() * this.constant);
+    }
+
+    /**
+     * The value of the reference, as resolved by the context, times the constant.
+     *
+     * @param context The context to resolve references within and record errors to.
+     * @return The product, or 0 if an error was recorded.
+     */
+    @Override
+    public long evalLong(EvalContext context) {
+        return context.valueOf(this.reference) * this.constant;
+    }
+}
@@ -1,8 +1,8 @@
 package sheep.expression.basic;
 
+import sheep.expression.EvalContext;
 import sheep.expression.Expression;
 
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -14,7 +14,7 @@ public class Constant extends Expression {
     /**
      * A number to represent as an expression.
      */
-    private final Long number;
+    private final long number;
 
     /**
      * Constructor
@@ -58,7 +58,7 @@ public class Constant extends Expression {
     @Override
     public boolean equals(Object obj) {
         if (obj instanceof Constant constant) {
-            return constant.number.equals(this.number);
+            return constant.number == this.number;
         }
         return false;
     }
@@ -70,16 +70,16 @@ public class Constant extends Expression {
      */
     @Override
     public int hashCode() {
-        return number.hashCode() * 2;
+        return Long.hashCode(this.number) * 2;
     }
 
     /**
      * Dependencies of the constant expression. Constant expressions have no dependencies.
      *
-     * @return An empty set to represent no dependencies.
+     * @return An empty, unmodifiable set to represent no dependencies.
      */
     public Set<String> dependencies() {
-        return new HashSet<>();
+        return Set.of();
     }
 
     /**
@@ -104,6 +104,17 @@ public class Constant extends Expression {
         return this.getValue();
     }
 
+    /**
+     * Return the numeric value stored, constants never record an error.
+     *
+     * @param context The context the expression is evaluated within.
+     * @return A long that represents the numeric value of the expression.
+     */
+    @Override
+    public long evalLong(EvalContext context) {
+        return this.number;
+    }
+
     /**
      * The string representation of the numeric value.
      * e.g.
@@ -113,6 +124,6 @@ public class Constant extends Expression {
      * @return the string representation of the expression.
      */
     public String render() {
-        return String.format("%s", this.number);
+        return Long.toString(this.number);
     }
 }
@@ -0,0 +1,128 @@
+package sheep.expression.basic;
+
+import sheep.expression.EvalContext;
+import sheep.expression.Expression;
+import sheep.expression.TypeError;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The result of an evaluation that has failed, e.g. "#VALUE!" or "#DIV/0!".
+ * Errors are ordinary values, so an evaluation that fails returns an error rather than throwing
+ * an exception, and expressions built upon a failed sub-expression evaluate to the same error.
+ */
+public class ErrorValue extends Expression {
+
+    /**
+     * The error of an operation upon a value that is not numeric, such as an empty cell.
+     */
+    public static final ErrorValue VALUE = new ErrorValue("#VALUE!");
+
+    /**
+     * The error of a division by zero.
+     */
+    public static final ErrorValue DIV_ZERO = new ErrorValue("#DIV/0!");
+
+    /**
+     * The name of the error, as rendered.
+     */
+    private final String name;
+
+    /**
+     * Constructor
+     *
+     * @param name The name of the error, as rendered, e.g. "#VALUE!".
+     * @requires name != null.
+     */
+    public ErrorValue(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Dependencies of the error. Errors have no dependencies.
+     *
+     * @return An empty set to represent no dependencies.
+     */
+    @Override
+    public Set<String> dependencies() {
+        return Set.of();
+    }
+
+    /**
+     * Return itself, an error cannot evaluate further.
+     *
+     * @param state A mapping of references to the expression they hold.
+     * @return Itself.
+     */
+    @Override
+    public Expression value(Map<String, Expression> state) {
+        return this;
+    }
+
+    /**
+     * Record this error in the context.
+     *
+     * @param context The context to record the error to.
+     * @return 0, as an error does not have a numeric value.
+     */
+    @Override
+    public long evalLong(EvalContext context) {
+        return context.fail(this);
+    }
+
+    /**
+     * Type error is always thrown, an error does not have a numeric value.
+     *
+     * @return Nothing will be returned as a TypeError is always thrown.
+     * @throws TypeError Will always be thrown by ErrorValue.
+     */
+    @Override
+    public long value() throws TypeError {
+        throw new TypeError(this.name);
+    }
+
+    /**
+     * If two errors are equal to each other. Equality is defined by having the same name.
+     *
+     * @param obj another instance to compare against.
+     * @return true if the other object is an error with the same name.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof ErrorValue error) {
+            return error.name.equals(this.name);
+        }
+        return false;
+    }
+
+    /**
+     * A hashcode method that respects the equals(Object) method.
+     *
+     * @return An appropriate hashcode value for this instance.
+     */
+    @Override
+    public int hashCode() {
+        return this.name.hashCode() * 7;
+    }
+
+    /**
+     * The string representation of the expression. For errors, this is the name of the error.
+     *
+     * @return the string representation of the expression.
+     */
+    @Override
+    public String render() {
+        return this.name;
+    }
+
+    /**
+     * String representation of the error.
+     *
+     * @return String representation of the expression.
+     */
+    @Override
+    public String toString() {
+        return String.format("ERROR(%s)", this.name);
+    }
+}
@@ -1,9 +1,9 @@
 package sheep.expression.basic;
 
+import sheep.expression.EvalContext;
 import sheep.expression.Expression;
 import sheep.expression.TypeError;
 
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -15,11 +15,11 @@ public class Nothing extends Expression {
     /**
      * Dependencies of the empty expression. Empty expressions have no dependencies.
      *
-     * @return An empty set to represent no dependencies.
+     * @return An empty, unmodifiable set to represent no dependencies.
      */
     @Override
     public Set<String> dependencies() {
-        return new HashSet<>();
+        return Set.of();
     }
 
     /**
@@ -33,6 +33,17 @@ public class Nothing extends Expression {
         return this;
     }
 
+    /**
+     * Record a value error in the context, as the empty expression has no numeric value.
+     *
+     * @param context The context to record the error to.
+     * @return 0, as the empty expression does not have a numeric value.
+     */
+    @Override
+    public long evalLong(EvalContext context) {
+        return context.fail(ErrorValue.VALUE);
+    }
+
     /**
      * Type error is always thrown.
      *
@@ -1,22 +1,54 @@
 package sheep.expression.basic;
 
+import sheep.expression.EvalContext;
 import sheep.expression.Expression;
+import sheep.expression.Interner;
 import sheep.expression.TypeError;
 
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 
 /**
  * A reference to a given identifier.
  */
 public class Reference extends Expression {
 
+    /**
+     * The slot of a reference that has not been bound to a built-in.
+     */
+    public static final int UNBOUND = -1;
+
     /**
      * An identifier of a cell or built-in.
      */
     private final String identifier;
 
+    /**
+     * The dependencies of the reference, a set containing only its identifier.
+     */
+    private final Set<String> dependencies;
+
+    /**
+     * Whether the reference is to a cell relative to the cell holding it.
+     */
+    private final boolean relative;
+
+    /**
+     * Rows from the cell holding a relative reference to the referenced cell.
+     */
+    private final int rowOffset;
+
+    /**
+     * Columns from the cell holding a relative reference to the referenced cell.
+     */
+    private final int columnOffset;
+
+    /**
+     * The slot of the built-in the reference has been bound to, or UNBOUND.
+     */
+    private final int slot;
+
     /**
      * Constructor
      *
@@ -24,7 +56,55 @@ public class Reference extends Expression {
      * @requires identifier != "", identifier != null.
      */
     public Reference(String identifier) {
+        this(identifier, UNBOUND);
+    }
+
+    /**
+     * Construct a reference to a built-in that has been bound to a slot of a symbol table, so
+     * that it can be resolved by index rather than by its identifier.
+     * A bound reference is equal to an unbound reference with the same identifier.
+     *
+     * @param identifier The identifier of the built-in.
+     * @param slot The slot of the built-in within the symbol table it was bound against.
+     * @requires identifier != "", identifier != null, slot >= 0 or slot == UNBOUND.
+     */
+    public Reference(String identifier, int slot) {
         this.identifier = identifier;
+        this.dependencies = Set.of(identifier);
+        this.relative = false;
+        this.rowOffset = 0;
+        this.columnOffset = 0;
+        this.slot = slot;
+    }
+
+    /**
+     * Construct a reference to a cell relative to the cell holding the reference.
+     * The identifier of a relative reference is in R1C1 notation, e.g. "R[-1]C[0]" refers to the
+     * cell one row above, which can never be confused with an identifier that was parsed.
+     * Formulas that differ only in which cell holds them are identical once their cell
+     * references are made relative, so a single expression can be shared between them.
+     *
+     * @param rowOffset Rows from the cell holding the reference to the referenced cell.
+     * @param columnOffset Columns from the cell holding the reference to the referenced cell.
+     */
+    public Reference(int rowOffset, int columnOffset) {
+        this.identifier = relativeIdentifier(rowOffset, columnOffset);
+        this.dependencies = Set.of(this.identifier);
+        this.relative = true;
+        this.rowOffset = rowOffset;
+        this.columnOffset = columnOffset;
+        this.slot = UNBOUND;
+    }
+
+    /**
+     * The R1C1 identifier of a relative reference with the given offsets.
+     *
+     * @param rowOffset Rows from the cell holding the reference to the referenced cell.
+     * @param columnOffset Columns from the cell holding the reference to the referenced cell.
+     * @return The identifier, e.g. "R[-1]C[0]".
+     */
+    public static String relativeIdentifier(int rowOffset, int columnOffset) {
+        return "R[" + rowOffset + "]C[" + columnOffset + "]";
     }
 
     /**
@@ -34,6 +114,43 @@ public class Reference extends Expression {
         return this.identifier;
     }
 
+    /**
+     * Whether the reference is to a cell relative to the cell holding it.
+     *
+     * @return true if the reference was constructed from offsets.
+     */
+    @Override
+    public boolean isRelative() {
+        return this.relative;
+    }
+
+    /**
+     * Rows from the cell holding a relative reference to the referenced cell.
+     *
+     * @return The row offset, or 0 if the reference is not relative.
+     */
+    public int getRowOffset() {
+        return this.rowOffset;
+    }
+
+    /**
+     * Columns from the cell holding a relative reference to the referenced cell.
+     *
+     * @return The column offset, or 0 if the reference is not relative.
+     */
+    public int getColumnOffset() {
+        return this.columnOffset;
+    }
+
+    /**
+     * The slot of the built-in the reference has been bound to.
+     *
+     * @return The slot, or UNBOUND if the reference has not been bound.
+     */
+    public int getSlot() {
+        return this.slot;
+    }
+
     /**
      * String representation of the reference.
      * The result should be formatted as "REFERENCE([identifier])".
@@ -84,12 +201,10 @@ public class Reference extends Expression {
      * Dependencies of the reference expression. The dependencies of a reference are its
      * identifier.
      *
-     * @return A set containing the references' identifier.
+     * @return An unmodifiable set containing the references' identifier.
      */
     public Set<String> dependencies() {
-        Set<String> dependencies = new HashSet<>();
-        dependencies.add(this.identifier);
-        return dependencies;
+        return this.dependencies;
     }
 
     /**
@@ -101,12 +216,41 @@ public class Reference extends Expression {
      * @throws TypeError - If a type error occurs in the process of evaluation.
      */
     public Expression value(Map<String, Expression> state) throws TypeError {
-        if (state.containsKey(this.identifier)) {
-            return state.get(this.identifier).value(state);
+        Expression value = state.get(this.identifier);
+        if (value != null) {
+            return value.value(state);
         }
         return this;
     }
 
+    /**
+     * Replace this reference by the result of the function.
+     *
+     * @param replacement Maps each reference within the expression to its replacement.
+     * @param interner The interner to share the replacement through, or null to not share it.
+     * @return The replacement of this reference.
+     */
+    @Override
+    public Expression rewrite(Function<Reference, Expression> replacement, Interner interner) {
+        Expression rewritten = replacement.apply(this);
+        if (interner == null || rewritten == this) {
+            return rewritten;
+        }
+        return interner.intern(rewritten);
+    }
+
+    /**
+     * The numeric value of the cell or built-in this reference refers to, as resolved by the
+     * context.
+     *
+     * @param context The context to resolve the reference within.
+     * @return The numeric value of the reference, or 0 if an error was recorded.
+     */
+    @Override
+    public long evalLong(EvalContext context) {
+        return context.valueOf(this);
+    }
+
     /**
      * Always throws type error.
      *
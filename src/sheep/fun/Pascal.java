@@ -1,8 +1,12 @@
 package sheep.fun;
 
+import sheep.core.CellEdit;
 import sheep.core.SheetUpdate;
 import sheep.core.UpdateResponse;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class Pascal implements Fun {
     private final int startRow;
     private final int startColumn;
@@ -14,26 +18,28 @@ public class Pascal implements Fun {
 
     @Override
     public void draw(SheetUpdate sheet) throws FunException {
+        List<CellEdit> edits = new ArrayList<>();
         for (int y = 0; y < 5; y++) {
             for (int x = 0; x < 6; x++) {
                 int row = y + startRow;
                 int column = x + startColumn;
-                UpdateResponse response;
                 if (x < 1) {
-                    response = sheet.update(row, column, "1");
+                    edits.add(new CellEdit(row, column, "1"));
                 } else if (x > y) {
-                    response = sheet.update(row, column, "1");
+                    edits.add(new CellEdit(row, column, "1"));
                 } else {
                     String leftColumn = Character.toString(column - 1 + 65);
                     String rightColumn = Character.toString(column + 65);
-                    response = sheet.update(row, column,
+                    edits.add(new CellEdit(row, column,
                             "" + leftColumn + (row - 1) + " + "
-                                    + rightColumn + (row - 1));
-                }
-                if (!response.isSuccess()) {
-                    throw new FunException(response.getMessage());
+                                    + rightColumn + (row - 1)));
                 }
             }
         }
+        for (UpdateResponse response : sheet.updateAll(edits)) {
+            if (!response.isSuccess()) {
+                throw new FunException(response.getMessage());
+            }
+        }
     }
 }
@@ -0,0 +1,112 @@
+package sheep.parsing;
+
+import sheep.expression.Expression;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parser that remembers the expressions produced by another parser.
+ * Expressions are immutable, so the same expression can be shared by every cell whose formula
+ * has the same text. Inputs are trimmed before lookup, and only the most recently used inputs are
+ * kept, up to a fixed capacity. Inputs that fail to parse are not cached.
+ */
+public class CachingParser implements Parser {
+
+    /**
+     * The parser used on a cache miss.
+     */
+    private final Parser parser;
+
+    /**
+     * Parsed expressions by trimmed input, in least to most recently used order.
+     */
+    private final Map<String, Expression> cache;
+
+    /**
+     * Number of parses answered from the cache.
+     */
+    private long hits = 0;
+
+    /**
+     * Number of parses passed through to the underlying parser.
+     */
+    private long misses = 0;
+
+    /**
+     * Construct a new caching parser.
+     *
+     * @param parser The parser whose results will be cached.
+     * @param capacity The maximum number of expressions to remember.
+     * @requires parser != null, capacity &gt; 0.
+     */
+    public CachingParser(Parser parser, int capacity) {
+        this.parser = parser;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Expression> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Attempts to parse a string expression into an expression.
+     * If the same input, ignoring surrounding whitespace, has been parsed recently, the earlier
+     * expression is returned.
+     *
+     * @param input A string to attempt to parse.
+     * @return The result of parsing the expression.
+     * @throws ParseException If the string input is not recognisable as an expression.
+     */
+    @Override
+    public Expression parse(String input) throws ParseException {
+        String key = input.trim();
+        synchronized (this.cache) {
+            Expression cached = this.cache.get(key);
+            if (cached != null) {
+                this.hits++;
+                return cached;
+            }
+            this.misses++;
+        }
+        Expression expression = this.parser.parse(key);
+        synchronized (this.cache) {
+            this.cache.put(key, expression);
+        }
+        return expression;
+    }
+
+    /**
+     * The number of parses that were answered from the cache.
+     *
+     * @return The number of cache hits.
+     */
+    public long hits() {
+        synchronized (this.cache) {
+            return this.hits;
+        }
+    }
+
+    /**
+     * The number of parses that were passed through to the underlying parser.
+     *
+     * @return The number of cache misses.
+     */
+    public long misses() {
+        synchronized (this.cache) {
+            return this.misses;
+        }
+    }
+
+    /**
+     * The number of expressions currently remembered.
+     *
+     * @return The size of the cache.
+     */
+    public int size() {
+        synchronized (this.cache) {
+            return this.cache.size();
+        }
+    }
+}
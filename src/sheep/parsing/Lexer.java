@@ -0,0 +1,203 @@
+package sheep.parsing;
+
+/**
+ * Splits the text of a formula into tokens in a single left-to-right pass.
+ * The lexer holds only the current token; it does not allocate an object per token. Numbers are
+ * read directly into a long and operators are recorded as their character, so only identifiers
+ * ever need a substring of the input, and only once the parser asks for one.
+ */
+class Lexer {
+
+    /**
+     * The kinds of token that may appear in a formula.
+     */
+    enum Kind {
+        /**
+         * A decimal integer literal.
+         */
+        NUMBER,
+        /**
+         * A name made of letters and digits, e.g. A1 or life.
+         */
+        IDENTIFIER,
+        /**
+         * One of the operators = &lt; + - * /.
+         */
+        OPERATOR,
+        /**
+         * An opening parenthesis.
+         */
+        OPEN,
+        /**
+         * A closing parenthesis.
+         */
+        CLOSE,
+        /**
+         * The end of the input.
+         */
+        END
+    }
+
+    /**
+     * The text being split into tokens.
+     */
+    private final String input;
+
+    /**
+     * Index of the first character not yet read.
+     */
+    private int position = 0;
+
+    /**
+     * Kind of the current token.
+     */
+    private Kind kind;
+
+    /**
+     * Index of the first character of the current token.
+     */
+    private int start;
+
+    /**
+     * The negated value of the current token if it is a number.
+     * Numbers are accumulated as negative values so that Long.MIN_VALUE can be represented.
+     */
+    private long negated;
+
+    /**
+     * Whether the current number is too large to be represented as a long, even when negated.
+     */
+    private boolean overflow;
+
+    /**
+     * Constructs a lexer positioned at the first token of the input.
+     *
+     * @param input The text to split into tokens.
+     * @throws ParseException If the first token is not recognisable.
+     */
+    Lexer(String input) throws ParseException {
+        this.input = input;
+        advance();
+    }
+
+    /**
+     * Kind of the current token.
+     *
+     * @return The kind of the current token.
+     */
+    Kind kind() {
+        return this.kind;
+    }
+
+    /**
+     * The operator character of the current token.
+     *
+     * @return The operator character.
+     * @requires kind() == Kind.OPERATOR.
+     */
+    char operator() {
+        return this.input.charAt(this.start);
+    }
+
+    /**
+     * The text of the current token.
+     *
+     * @return A substring of the input spanning the current token.
+     */
+    String text() {
+        return this.input.substring(this.start, this.position);
+    }
+
+    /**
+     * Whether the current token is immediately followed by a number, with no space between.
+     *
+     * @return True if the next character of the input is a digit.
+     */
+    boolean touchesDigit() {
+        return this.position < this.input.length() && isDigit(this.input.charAt(this.position));
+    }
+
+    /**
+     * The value of the current number token.
+     *
+     * @param negative Whether the number is preceded by a minus sign.
+     * @return The value of the number, negated if required.
+     * @throws ParseException If the number does not fit within a long.
+     * @requires kind() == Kind.NUMBER.
+     */
+    long number(boolean negative) throws ParseException {
+        if (this.overflow || (!negative && this.negated == Long.MIN_VALUE)) {
+            throw new ParseException("Number is too large: " + text());
+        }
+        return negative ? this.negated : -this.negated;
+    }
+
+    /**
+     * Move on to the next token of the input, skipping whitespace.
+     *
+     * @throws ParseException If the next token is not recognisable.
+     */
+    void advance() throws ParseException {
+        int length = this.input.length();
+        while (this.position < length && Character.isWhitespace(this.input.charAt(this.position))) {
+            this.position++;
+        }
+        this.start = this.position;
+        if (this.position == length) {
+            this.kind = Kind.END;
+            return;
+        }
+        char character = this.input.charAt(this.position);
+        switch (character) {
+            case '=', '<', '+', '-', '*', '/' -> {
+                this.kind = Kind.OPERATOR;
+                this.position++;
+                return;
+            }
+            case '(' -> {
+                this.kind = Kind.OPEN;
+                this.position++;
+                return;
+            }
+            case ')' -> {
+                this.kind = Kind.CLOSE;
+                this.position++;
+                return;
+            }
+            default -> {
+                if (!Character.isLetterOrDigit(character)) {
+                    throw new ParseException("Unexpected character: " + character);
+                }
+            }
+        }
+        boolean digits = true;
+        this.negated = 0;
+        this.overflow = false;
+        while (this.position < length
+                && Character.isLetterOrDigit(this.input.charAt(this.position))) {
+            character = this.input.charAt(this.position);
+            if (digits && isDigit(character)) {
+                int digit = character - '0';
+                if (this.negated < (Long.MIN_VALUE + digit) / 10) {
+                    this.overflow = true;
+                } else {
+                    this.negated = this.negated * 10 - digit;
+                }
+            } else {
+                digits = false;
+            }
+            this.position++;
+        }
+        this.kind = digits ? Kind.NUMBER : Kind.IDENTIFIER;
+    }
+
+    /**
+     * Whether a character is an ASCII decimal digit.
+     *
+     * @param character The character to check.
+     * @return True if the character is between '0' and '9' inclusive.
+     */
+    private static boolean isDigit(char character) {
+        return character >= '0' && character <= '9';
+    }
+}
@@ -5,14 +5,23 @@ import sheep.expression.ExpressionFactory;
 import sheep.expression.InvalidExpression;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 /**
  * Parser of basic expressions and arithmetic expressions.
+ * Input is split into tokens by a single-pass {@link Lexer} and parsed by precedence climbing,
+ * so parsing takes time linear in the length of the input.
+ * From loosest to tightest binding, the operators are =, &lt;, +, -, * and /. A run of the same
+ * operator forms a single arithmetic expression with many arguments, e.g. "1 - 2 - 3" is one
+ * minus expression with three arguments. Parentheses may be used to group sub-expressions.
  */
 public class SimpleParser implements Parser {
 
+    /**
+     * Operators ordered from loosest to tightest binding.
+     */
+    private static final String OPERATORS = "=<+-*/";
+
     /**
      * A new instance of Parser.
      */
@@ -29,125 +38,96 @@ public class SimpleParser implements Parser {
     /**
      * Attempts to parse a string expression into an expression.
      * @param input A string to attempt to parse.
-     *              If it contains an operator, it must have spaces on both sides.
-     *              e.g. "4 + 5" is acceptable but "4+5" is not.
+     *              Operators do not need to be surrounded by spaces, e.g. "4 + 5" and "4+5" are
+     *              both acceptable. A minus sign immediately before a number is part of the number.
      * @return The result of parsing the expression.
      * @throws ParseException If the string input is not recognisable as an expression.
      */
     public Expression parse(String input) throws ParseException {
-        input = input.trim();
-        String operator;
-        List<String> listExpression;
-        if (input.isEmpty()) {
+        Lexer lexer = new Lexer(input);
+        if (lexer.kind() == Lexer.Kind.END) {
             return this.factory.createEmpty();
-            // If the input is not an empty string
-        } else {
-            if (input.contains("=")) {
-                operator = "=";
-                String[] arrayExpression = input.split("=");
-                listExpression = Arrays.asList(arrayExpression);
-            } else if (input.contains("<")) {
-                operator = "<";
-                String[] arrayExpression = input.split("<");
-                listExpression = Arrays.asList(arrayExpression);
-            } else if (input.contains("+")) {
-                operator = "+";
-                listExpression = splitPlus(input);
-            } else if (input.contains("-")) {
-                operator = "-";
-                String[] arrayExpression = input.split("-");
-                listExpression = Arrays.asList(arrayExpression);
-            } else if (input.contains("*")) {
-                operator = "*";
-                listExpression = splitTimes(input);
-            } else if (input.contains("/")) {
-                operator = "/";
-                String[] arrayExpression = input.split("/");
-                listExpression = Arrays.asList(arrayExpression);
-            } else {
-                return singleConverter(input);
-            }
         }
-
-        if (listExpression.size() <= 2) {
-            try {
-                return singleConverter(input);
-            } catch (ParseException e) {
-                operator = operator;
-            }
-        }
-
-        List<Expression> expressions = new ArrayList<>();
-
-        for (String expression : listExpression) {
-            expression = expression.trim();
-            expressions.add(parse(expression));
-        }
-        Object[] arrayOfExpressions = expressions.toArray();
-        try {
-            return this.factory.createOperator(operator, arrayOfExpressions);
-        } catch (InvalidExpression e) {
-            throw new ParseException("Cannot parse.");
+        Expression expression = parseOperators(lexer, 0);
+        if (lexer.kind() != Lexer.Kind.END) {
+            throw new ParseException("Unexpected input after expression: " + lexer.text());
         }
+        return expression;
     }
 
     /**
-     * Converts a string to a Constant or Reference.
+     * Parse a sequence of operands joined by operators that bind at least as tightly as the given
+     * level.
      *
-     * @param input The string to be parsed
-     * @return A Constant expression or Reference expression.
-     * @throws ParseException If it cannot be parsed.
+     * @param lexer The lexer, positioned at the first token of the sequence.
+     * @param level The loosest binding operator level to consume.
+     * @return The parsed expression.
+     * @throws ParseException If the tokens are not recognisable as an expression.
      */
-    private Expression singleConverter(String input) throws ParseException {
-        try {
-            input = input.trim();
-            long constant = Long.parseLong(input);
-            return this.factory.createConstant(constant);
-        } catch (NumberFormatException e) {
-            for (char character : input.toCharArray()) {
-                if (!Character.isAlphabetic(character) && !Character.isDigit(character)) {
-                    throw new ParseException("Not a number.");
-                }
+    private Expression parseOperators(Lexer lexer, int level) throws ParseException {
+        Expression left = parseOperand(lexer);
+        while (lexer.kind() == Lexer.Kind.OPERATOR) {
+            char operator = lexer.operator();
+            int binding = OPERATORS.indexOf(operator);
+            if (binding < level) {
+                break;
             }
-            return this.factory.createReference(input);
-        }
-    }
-
-    /**
-     * Splits the string on +.
-     *
-     * @param input String attempt to parse.
-     * @return A list of split strings.
-     */
-    private List<String> splitPlus(String input) {
-        List<String> splitExpression = new ArrayList<>();
-        String newString = input;
-        for (int i = 0; i < input.length(); i++) {
-            if (input.charAt(i) == '+') {
-                splitExpression.add(newString.substring(0, newString.indexOf("+")));
-                newString = newString.substring(newString.indexOf("+") + 1);
+            List<Expression> arguments = new ArrayList<>();
+            arguments.add(left);
+            while (lexer.kind() == Lexer.Kind.OPERATOR && lexer.operator() == operator) {
+                lexer.advance();
+                arguments.add(parseOperators(lexer, binding + 1));
+            }
+            try {
+                left = this.factory.createOperator(String.valueOf(operator), arguments.toArray());
+            } catch (InvalidExpression e) {
+                throw new ParseException(e);
             }
         }
-        splitExpression.add(newString);
-        return splitExpression;
+        return left;
     }
 
     /**
-     * Splits the string on *.
+     * Parse a single operand: a number, an identifier or a parenthesised expression.
      *
-     * @param input String attempt to parse.
-     * @return A list of split strings.
+     * @param lexer The lexer, positioned at the first token of the operand.
+     * @return The parsed operand.
+     * @throws ParseException If the tokens are not recognisable as an operand.
      */
-    private List<String> splitTimes(String input) {
-        List<String> splitExpression = new ArrayList<>();
-        String newString = input;
-        for (int i = 0; i < input.length(); i++) {
-            if (input.charAt(i) == '*') {
-                splitExpression.add(newString.substring(0, newString.indexOf("*")));
-                newString = newString.substring(newString.indexOf("*") + 1);
+    private Expression parseOperand(Lexer lexer) throws ParseException {
+        switch (lexer.kind()) {
+            case NUMBER -> {
+                Expression constant = this.factory.createConstant(lexer.number(false));
+                lexer.advance();
+                return constant;
+            }
+            case IDENTIFIER -> {
+                Expression reference = this.factory.createReference(lexer.text());
+                lexer.advance();
+                return reference;
+            }
+            case OPEN -> {
+                lexer.advance();
+                Expression inner = parseOperators(lexer, 0);
+                if (lexer.kind() != Lexer.Kind.CLOSE) {
+                    throw new ParseException("Missing closing parenthesis.");
+                }
+                lexer.advance();
+                return inner;
+            }
+            case OPERATOR -> {
+                if (lexer.operator() == '-' && lexer.touchesDigit()) {
+                    lexer.advance();
+                    if (lexer.kind() != Lexer.Kind.NUMBER) {
+                        throw new ParseException("Expected a number but found: " + lexer.text());
+                    }
+                    Expression constant = this.factory.createConstant(lexer.number(true));
+                    lexer.advance();
+                    return constant;
+                }
+                throw new ParseException("Expected an operand but found: " + lexer.text());
             }
+            default -> throw new ParseException("Expected an operand.");
         }
-        splitExpression.add(newString);
-        return splitExpression;
     }
-}
\ No newline at end of file
+}
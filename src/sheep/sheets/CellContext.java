@@ -0,0 +1,120 @@
+package sheep.sheets;
+
+import sheep.expression.EvalContext;
+import sheep.expression.Expression;
+import sheep.expression.basic.ErrorValue;
+import sheep.expression.basic.Reference;
+
+import java.util.Map;
+
+/**
+ * The context that the formula of a cell is evaluated to a primitive number within.
+ * References to cells are resolved straight from the sheet's storage, so a numeric cell is read
+ * without creating a constant expression for it. Relative references are resolved from the cell
+ * being evaluated.
+ */
+class CellContext extends EvalContext {
+
+    /**
+     * The sheet whose cells are resolved.
+     */
+    private final Sheet sheet;
+
+    /**
+     * The state of the sheet, used for built-ins and for expressions that are evaluated by value.
+     */
+    private final SheetState state;
+
+    /**
+     * The row of the cell being evaluated.
+     */
+    private final int row;
+
+    /**
+     * The column of the cell being evaluated.
+     */
+    private final int column;
+
+    /**
+     * Constructor.
+     *
+     * @param sheet The sheet whose cells are resolved.
+     * @param state The state of the sheet.
+     * @param row The row of the cell being evaluated.
+     * @param column The column of the cell being evaluated.
+     */
+    CellContext(Sheet sheet, SheetState state, int row, int column) {
+        this.sheet = sheet;
+        this.state = state;
+        this.row = row;
+        this.column = column;
+    }
+
+    /**
+     * The sheet whose cells are resolved.
+     *
+     * @return The sheet the cell being evaluated belongs to.
+     */
+    Sheet sheet() {
+        return this.sheet;
+    }
+
+    /**
+     * The numeric value of the cell or built-in a reference refers to.
+     * References to cells within the sheet are resolved through the sheet's value cache, and any
+     * other identifier is resolved as a built-in. References bound to a built-in are resolved
+     * by their slot, without looking up their identifier.
+     *
+     * @param reference The reference to resolve.
+     * @return The numeric value of the reference, or 0 if an error was recorded.
+     */
+    @Override
+    public long valueOf(Reference reference) {
+        if (reference.isRelative()) {
+            return cell(reference.getRowOffset(), reference.getColumnOffset());
+        }
+        if (reference.getSlot() != Reference.UNBOUND) {
+            return this.state.builtIn(reference.getSlot()).evalLong(this);
+        }
+        long key = CellLocation.parseKey(reference.getIdentifier());
+        if (key != CellLocation.NOT_A_REFERENCE) {
+            int targetRow = CellLocation.rowOf(key);
+            int targetColumn = CellLocation.columnOf(key);
+            if (targetRow < this.sheet.getRows() && targetColumn < this.sheet.getColumns()) {
+                return this.sheet.numberAt(this, targetRow, targetColumn);
+            }
+        }
+        Expression builtIn = this.state.builtIn(reference.getIdentifier());
+        if (builtIn == null) {
+            return fail(ErrorValue.VALUE);
+        }
+        return builtIn.evalLong(this);
+    }
+
+    /**
+     * The numeric value of the cell at an offset from the cell being evaluated.
+     *
+     * @param rowOffset Rows from the cell being evaluated to the referenced cell.
+     * @param columnOffset Columns from the cell being evaluated to the referenced cell.
+     * @return The numeric value of the cell, or 0 if an error was recorded.
+     */
+    long cell(int rowOffset, int columnOffset) {
+        long targetRow = (long) this.row + rowOffset;
+        long targetColumn = (long) this.column + columnOffset;
+        if (targetRow < 0 || targetColumn < 0 || targetRow >= this.sheet.getRows()
+                || targetColumn >= this.sheet.getColumns()) {
+            return fail(ErrorValue.VALUE);
+        }
+        return this.sheet.numberAt(this, (int) targetRow, (int) targetColumn);
+    }
+
+    /**
+     * The state of the sheet, resolving relative references from the cell being evaluated.
+     *
+     * @return A mapping of references to the expression they hold.
+     */
+    @Override
+    public Map<String, Expression> state() {
+        return this.state.at(this.row, this.column);
+    }
+}
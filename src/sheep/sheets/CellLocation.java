@@ -1,27 +1,71 @@
 package sheep.sheets;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.Optional;
 
 /**
  * A location of a cell within a grid.
  * This class represents a location via a row, column coordinate system.
+ * Columns are named with one or more letters, A to Z, then AA to ZZ, then AAA and so on.
+ * A location can also be packed into a single long key, with the row in the upper 32 bits and
+ * the column in the lower 32 bits, which can be encoded and decoded with plain arithmetic.
  */
 public class CellLocation {
 
     /**
      * Row of table.
      */
-    private final Integer row;
+    private final int row;
 
     /**
      * Column of table.
      */
-    private final Integer column;
+    private final int column;
 
     private static final String alphabets = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
 
+    /**
+     * Returned by parseKey(String) for strings that are not cell references.
+     */
+    public static final long NOT_A_REFERENCE = -1L;
+
+    /**
+     * The most letters a column name may have, so that the column fits within an int.
+     */
+    private static final int MAX_LETTERS = 6;
+
+    /**
+     * Value of each uppercase letter in a column name, from 1 for A to 26 for Z, and 0 for every
+     * other character.
+     */
+    private static final byte[] LETTERS = new byte[128];
+
+    /**
+     * Value of each decimal digit, and -1 for every other character.
+     */
+    private static final byte[] DIGITS = new byte[128];
+
+    static {
+        Arrays.fill(DIGITS, (byte) -1);
+        for (int i = 0; i < alphabets.length(); i++) {
+            LETTERS[alphabets.charAt(i)] = (byte) (i + 1);
+        }
+        for (char digit = '0'; digit <= '9'; digit++) {
+            DIGITS[digit] = (byte) (digit - '0');
+        }
+    }
+
+    /**
+     * Amount of entries in the interning cache, must be a power of two.
+     */
+    private static final int CACHE_SIZE = 1 << 16;
+
+    /**
+     * Direct-mapped cache of recently used locations, indexed by hash code.
+     * Locations are immutable, so a racing write can at worst replace one entry with another.
+     */
+    private static final CellLocation[] cache = new CellLocation[CACHE_SIZE];
+
     /**
      * Constructs a new cell location at the given row and column.
      *
@@ -30,13 +74,8 @@ public class CellLocation {
      * @requires row is greater than or equal to zero, column is between 'A' and 'Z' inclusive.
      */
     public CellLocation(int row, char column) {
-        Map<Character, Integer> map = new HashMap<>();
-        int length = alphabets.length();
-        for (int i = 0; i < length; i++) {
-            map.put(alphabets.charAt(i), i);
-        }
         this.row = row;
-        this.column = map.get(column);
+        this.column = column - 'A';
     }
 
     /**
@@ -44,18 +83,91 @@ public class CellLocation {
      *
      * @param row A number representing the row number.
      * @param column A number representing the column.
-     * @requires row and column are greater than or equal to zero., column is less than 26.
+     * @requires row and column are greater than or equal to zero.
      */
     public CellLocation(int row, int column) {
         this.row = row;
         this.column = column;
     }
 
+    /**
+     * Find the location at the given row and column, reusing a cached instance where possible
+     * so that repeated lookups of the same cell do not allocate.
+     *
+     * @param row A number representing the row number.
+     * @param column A number representing the column.
+     * @return A cell location at the given row and column.
+     * @requires row and column are greater than or equal to zero.
+     */
+    public static CellLocation of(int row, int column) {
+        int slot = hash(pack(row, column)) & (CACHE_SIZE - 1);
+        CellLocation cached = cache[slot];
+        if (cached != null && cached.row == row && cached.column == column) {
+            return cached;
+        }
+        CellLocation location = new CellLocation(row, column);
+        cache[slot] = location;
+        return location;
+    }
+
+    /**
+     * Find the location encoded by a packed key.
+     *
+     * @param key A key produced by pack(int, int) or key().
+     * @return A cell location at the row and column of the key.
+     */
+    public static CellLocation of(long key) {
+        return of(rowOf(key), columnOf(key));
+    }
+
+    /**
+     * Pack a row and column into a single key.
+     *
+     * @param row A number representing the row number.
+     * @param column A number representing the column.
+     * @return A key with the row in the upper 32 bits and the column in the lower 32 bits.
+     */
+    public static long pack(int row, int column) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    /**
+     * The row encoded in a packed key.
+     *
+     * @param key A key produced by pack(int, int).
+     * @return The row of the key.
+     */
+    public static int rowOf(long key) {
+        return (int) (key >>> 32);
+    }
+
+    /**
+     * The column encoded in a packed key.
+     *
+     * @param key A key produced by pack(int, int).
+     * @return The column of the key.
+     */
+    public static int columnOf(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Spread the bits of a packed key so that nearby cells have unrelated hash codes.
+     *
+     * @param key A key produced by pack(int, int).
+     * @return A well distributed hash of the key.
+     */
+    private static int hash(long key) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+
     /**
      * Attempt to parse a string as a reference to a cell location.
      * If the string is not a reference to a cell location, returns Optional.empty().
-     * The format of the reference is a single uppercase character followed by an integer without
-     * spaces and without extraneous characters after the integer or before the character.
+     * The format of the reference is one or more uppercase characters naming the column, followed
+     * by an integer without spaces and without extraneous characters after the integer or before
+     * the characters. Columns are named A to Z, then AA to ZZ, then AAA and so on.
      *
      * @param ref A string that may represent a cell location.
      * @return An optional containing a cell reference if the string is a reference, otherwise the
@@ -63,22 +175,85 @@ public class CellLocation {
      * @requires ref != null
      */
     public static Optional<CellLocation> maybeReference(String ref) {
-        String number = "";
-        for (char character : alphabets.toCharArray()) {
-            // Check if the starting letter is an uppercase letter.
-            if (character == ref.charAt(0)) {
-                // Check if the other characters in ref are all integers.
-                for (int i = 1; i < ref.length(); i++) {
-                    if (Character.isDigit(ref.charAt(i))) {
-                        number = number + ref.charAt(i);
-                    } else {
-                        return Optional.empty();
-                    }
-                }
-                return Optional.of(new CellLocation(Integer.parseInt(number), ref.charAt(0)));
+        long key = parseKey(ref);
+        if (key == NOT_A_REFERENCE) {
+            return Optional.empty();
+        }
+        return Optional.of(of(key));
+    }
+
+    /**
+     * Attempt to parse a string as a reference to a cell location, without allocating.
+     * The accepted format is the same as for maybeReference(String). The string is read in a
+     * single pass, classifying each character with a lookup table.
+     *
+     * @param ref A string that may represent a cell location.
+     * @return The packed key of the referenced location, or NOT_A_REFERENCE if the string is not
+     * a reference.
+     * @requires ref != null
+     */
+    public static long parseKey(String ref) {
+        int length = ref.length();
+        int index = 0;
+        long column = 0;
+        while (index < length && index < MAX_LETTERS) {
+            char character = ref.charAt(index);
+            if (character >= LETTERS.length || LETTERS[character] == 0) {
+                break;
             }
+            column = column * 26 + LETTERS[character];
+            index++;
         }
-        return Optional.empty();
+        if (index == 0 || index == length) {
+            return NOT_A_REFERENCE;
+        }
+        long row = 0;
+        while (index < length) {
+            char character = ref.charAt(index);
+            if (character >= DIGITS.length || DIGITS[character] < 0) {
+                return NOT_A_REFERENCE;
+            }
+            row = row * 10 + DIGITS[character];
+            if (row > Integer.MAX_VALUE) {
+                return NOT_A_REFERENCE;
+            }
+            index++;
+        }
+        return pack((int) row, (int) (column - 1));
+    }
+
+    /**
+     * Append the name of a column to a builder, e.g. A, Z, AA or XFD.
+     * No intermediate objects are allocated.
+     *
+     * @param builder The builder to append the name to.
+     * @param column A number representing the column.
+     * @return The given builder.
+     * @requires column is greater than or equal to zero.
+     */
+    public static StringBuilder appendColumn(StringBuilder builder, int column) {
+        long offset = column;
+        long span = 26;
+        while (offset >= span) {
+            offset -= span;
+            span *= 26;
+        }
+        for (long place = span / 26; place > 0; place /= 26) {
+            builder.append(alphabets.charAt((int) (offset / place)));
+            offset %= place;
+        }
+        return builder;
+    }
+
+    /**
+     * Append the name of this cell location to a builder, e.g. A2 or AB23.
+     * No intermediate objects are allocated.
+     *
+     * @param builder The builder to append the name to.
+     * @return The given builder.
+     */
+    public StringBuilder appendTo(StringBuilder builder) {
+        return appendColumn(builder, this.column).append(this.row);
     }
 
     /**
@@ -90,6 +265,15 @@ public class CellLocation {
         return this.row;
     }
 
+    /**
+     * This cell location packed into a single key.
+     *
+     * @return A key with the row in the upper 32 bits and the column in the lower 32 bits.
+     */
+    public long key() {
+        return pack(this.row, this.column);
+    }
+
     /**
      * The column number of this cell location.
      *
@@ -109,9 +293,11 @@ public class CellLocation {
      */
     @Override
     public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
         if (obj instanceof CellLocation cell) {
-            return (this.row.equals(cell.row)
-                    && this.column.equals((cell.column)));
+            return this.row == cell.row && this.column == cell.column;
         }
         return false;
     }
@@ -123,21 +309,16 @@ public class CellLocation {
      */
     @Override
     public int hashCode() {
-        return row.hashCode() * column.hashCode() * 17;
+        return hash(key());
     }
 
     /**
      * Returns a string representation of a cell location.
      *
-     * @return A string representation of this cell location, e.g. A2 or C23.
+     * @return A string representation of this cell location, e.g. A2 or AB23.
      */
     @Override
     public String toString() {
-        Map<Integer, Character> map = new HashMap<>();
-        int length = alphabets.length();
-        for (int i = 0; i < length; i++) {
-            map.put(i, alphabets.charAt(i));
-        }
-        return String.format("%s%d", map.get(this.column), this.row);
+        return appendTo(new StringBuilder(12)).toString();
     }
 }
\ No newline at end of file
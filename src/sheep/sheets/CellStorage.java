@@ -0,0 +1,92 @@
+package sheep.sheets;
+
+import sheep.expression.Expression;
+
+import java.util.List;
+
+/**
+ * Storage for the formulas and calculated values of the cells in a sheet.
+ * Empty cells have neither a formula nor a value, in which case null is returned.
+ */
+interface CellStorage {
+
+    /**
+     * The formula stored at the given position.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @return The formula at the position, or null if the cell is empty.
+     */
+    Expression formulaAt(int row, int column);
+
+    /**
+     * Store a formula at the given position.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @param formula The formula to store, or null to empty the cell.
+     */
+    void setFormula(int row, int column, Expression formula);
+
+    /**
+     * The calculated value stored at the given position.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @return The value at the position, or null if no value has been calculated.
+     */
+    Expression valueAt(int row, int column);
+
+    /**
+     * Store a calculated value at the given position.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @param value The value to store, or null to clear the value.
+     */
+    void setValue(int row, int column, Expression value);
+
+    /**
+     * Whether the value at the given position is numeric.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @return True if the cell holds a numeric value.
+     */
+    boolean isNumeric(int row, int column);
+
+    /**
+     * The numeric value stored at the given position.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @return The numeric value of the cell.
+     * @requires isNumeric(row, column).
+     */
+    long numberAt(int row, int column);
+
+    /**
+     * The calculation state recorded against the value at the given position.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @return The state of the cell, zero if none has been recorded.
+     */
+    byte stateAt(int row, int column);
+
+    /**
+     * Record a calculation state against the value at the given position.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @param state The state to record.
+     */
+    void setState(int row, int column, byte state);
+
+    /**
+     * The cells that hold a formula, in no particular order.
+     *
+     * @return A new list of the locations of every non-empty cell.
+     */
+    List<CellLocation> filled();
+}
@@ -0,0 +1,639 @@
+package sheep.sheets;
+
+import sheep.expression.EvalContext;
+import sheep.expression.Expression;
+import sheep.expression.Interner;
+import sheep.expression.TypeError;
+import sheep.expression.arithmetic.Arithmetic;
+import sheep.expression.basic.Constant;
+import sheep.expression.basic.ErrorValue;
+import sheep.expression.basic.Reference;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A formula compiled to a compact postfix program, run by a stack machine.
+ * Each instruction of the program is a single long, holding an opcode in its lowest byte and an
+ * operand in the remaining bits, so the program takes eight bytes per node rather than an object
+ * per node. The program is run by one loop over a primitive operand stack, rather than by
+ * virtual calls down the expression tree. The operand stack is reused between runs on the same
+ * thread, so running a program does not allocate.
+ * <p>
+ * Relative cell references are compiled to their row and column offsets, and are read straight
+ * from the sheet's storage. Evaluation records errors exactly as Expression.evalLong does, as
+ * operands are evaluated left to right and only the first error is kept.
+ * <p>
+ * The compiled formula wraps the expression it was compiled from, which is used for rendering,
+ * dependencies, and for evaluating outside of a sheet. The source cannot be rebuilt from the
+ * program, as a formula created by an optimizing factory is rendered as written but compiled
+ * in its simplified form. Compiling therefore adds the program to the memory of a formula
+ * rather than replacing the tree. As compiled formulas are interned, the program and its
+ * source are shared by every cell holding a formula of the same shape.
+ * <p>
+ * Once a formula has been evaluated as many times as the sheet's tier-up threshold, it is
+ * compiled further to a chain of method handles, which the JIT compiler can turn into machine
+ * code specific to the formula. The count is shared by every cell holding the formula.
+ */
+final class CompiledFormula extends Expression {
+
+    /**
+     * Push the operand, a constant that fits within the operand bits.
+     */
+    private static final int CONSTANT = 0;
+
+    /**
+     * Push the constant from the pool at the index given by the operand.
+     */
+    private static final int POOLED = 1;
+
+    /**
+     * Push the value of the cell at the row and column offsets packed into the operand.
+     */
+    private static final int CELL = 2;
+
+    /**
+     * Push the value of the reference from the pool at the index given by the operand.
+     */
+    private static final int NAME = 3;
+
+    /**
+     * Replace the given amount of operands by their sum.
+     */
+    private static final int PLUS = 4;
+
+    /**
+     * Replace the given amount of operands by the first minus the rest.
+     */
+    private static final int MINUS = 5;
+
+    /**
+     * Replace the given amount of operands by their product.
+     */
+    private static final int TIMES = 6;
+
+    /**
+     * Replace the given amount of operands by the first divided by the rest.
+     */
+    private static final int DIVIDE = 7;
+
+    /**
+     * Replace the given amount of operands by 1 if they are increasing, otherwise 0.
+     */
+    private static final int LESS = 8;
+
+    /**
+     * Replace the given amount of operands by 1 if they are all equal, otherwise 0.
+     */
+    private static final int EQUAL = 9;
+
+    /**
+     * Operators in the order of their opcodes, starting from PLUS.
+     */
+    private static final String OPERATORS = "+-*/<=";
+
+    /**
+     * Bits of an instruction used by the opcode.
+     */
+    private static final int OPCODE_BITS = 8;
+
+    /**
+     * Bits of a cell operand used by each of the row and column offset.
+     */
+    private static final int OFFSET_BITS = 28;
+
+    /**
+     * The operand stack of each thread, shared by every program run on that thread.
+     */
+    private static final ThreadLocal<OperandStack> STACKS =
+            ThreadLocal.withInitial(OperandStack::new);
+
+    /**
+     * The expression the formula was compiled from.
+     */
+    private final Expression source;
+
+    /**
+     * The instructions of the program, in postfix order.
+     */
+    private final long[] program;
+
+    /**
+     * Constants that are too large to fit within an operand.
+     */
+    private final long[] constants;
+
+    /**
+     * References that are not relative references to cells.
+     */
+    private final Reference[] names;
+
+    /**
+     * The most operands on the stack at any one time.
+     */
+    private final int depth;
+
+    /**
+     * Amount of times the program has been run, counted until the formula is tiered up.
+     * Updates from concurrent evaluations may be lost, which only delays tiering up.
+     */
+    private int evaluations = 0;
+
+    /**
+     * Whether the formula has been tiered up, even if it could not be compiled to a handle.
+     */
+    private volatile boolean tiered = false;
+
+    /**
+     * The method handle evaluating the formula, or null if it has not been tiered up.
+     */
+    private volatile MethodHandle handle = null;
+
+    /**
+     * Amount of cells of the sheet holding the formula.
+     */
+    private int holders = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param source The expression the formula was compiled from.
+     * @param program The instructions of the program, in postfix order.
+     * @param constants Constants that are too large to fit within an operand.
+     * @param names References that are not relative references to cells.
+     * @param depth The most operands on the stack at any one time.
+     */
+    private CompiledFormula(Expression source, long[] program, long[] constants,
+                            Reference[] names, int depth) {
+        this.source = source;
+        this.program = program;
+        this.constants = constants;
+        this.names = names;
+        this.depth = depth;
+    }
+
+    /**
+     * Compile an expression, if it is made only of arithmetic, constants and references.
+     *
+     * @param expression The expression to compile.
+     * @return The compiled formula, or null if the expression cannot be compiled or is too
+     * simple to benefit from compiling.
+     */
+    static CompiledFormula compile(Expression expression) {
+        if (!(expression.simplified() instanceof Arithmetic)) {
+            return null;
+        }
+        Compiler compiler = new Compiler();
+        if (!compiler.emit(expression.simplified())) {
+            return null;
+        }
+        return new CompiledFormula(expression,
+                compiler.program.stream().mapToLong(Long::longValue).toArray(),
+                compiler.constants.stream().mapToLong(Long::longValue).toArray(),
+                compiler.names.toArray(new Reference[0]), compiler.maxDepth);
+    }
+
+    /**
+     * The expression the formula was compiled from.
+     *
+     * @return The source expression.
+     */
+    Expression source() {
+        return this.source;
+    }
+
+    /**
+     * The amount of instructions in the program.
+     *
+     * @return The length of the program.
+     */
+    int size() {
+        return this.program.length;
+    }
+
+    /**
+     * Record that cells have started or stopped holding the formula.
+     *
+     * @param change The amount of cells that started holding the formula, negative if cells
+     *               stopped holding it.
+     * @return The change in the amount of cells evaluated through a method handle.
+     */
+    synchronized int hold(int change) {
+        this.holders += change;
+        return this.handle == null ? 0 : change;
+    }
+
+    /**
+     * Compile the formula to a method handle, if no other evaluation has already done so.
+     * Every cell holding the formula is then counted by the sheet as evaluated through a method
+     * handle.
+     *
+     * @param sheet The sheet holding the formula.
+     */
+    private synchronized void tierUp(Sheet sheet) {
+        if (!this.tiered) {
+            this.handle = HandleCompiler.compile(this.source);
+            this.tiered = true;
+            if (this.handle != null) {
+                sheet.tieredUp(this.holders);
+            }
+        }
+    }
+
+    /**
+     * Evaluate the formula for the cell of the given context through its method handle.
+     *
+     * @param hot The method handle evaluating the formula.
+     * @param context The context of the cell being evaluated.
+     * @return The value of the formula, or 0 if an error was recorded.
+     */
+    private static long invoke(MethodHandle hot, CellContext context) {
+        try {
+            return (long) hot.invokeExact(context);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Run the program for the cell of the given context.
+     * The operands are kept in a frame of the thread's operand stack. Reading a cell may run the
+     * programs of other cells on the same thread, which take frames above this one.
+     *
+     * @param context The context of the cell being evaluated.
+     * @return The value of the formula, or 0 if an error was recorded.
+     */
+    long run(CellContext context) {
+        OperandStack frames = STACKS.get();
+        int frame = frames.top;
+        // A nested run may grow the stack into a new array, but this frame keeps using the
+        // array it reserved, which no other frame writes to while this one is running.
+        long[] stack = frames.reserve(this.depth);
+        try {
+            return execute(context, stack, frame);
+        } finally {
+            frames.top = frame;
+        }
+    }
+
+    /**
+     * Execute the program over a frame of an operand stack.
+     *
+     * @param context The context of the cell being evaluated.
+     * @param stack The operand stack.
+     * @param frame The index of the first operand of the frame.
+     * @return The value of the formula, or 0 if an error was recorded.
+     */
+    private long execute(CellContext context, long[] stack, int frame) {
+        int top = frame;
+        for (long instruction : this.program) {
+            long operand = instruction >> OPCODE_BITS;
+            switch ((int) instruction & 0xFF) {
+                case CONSTANT -> stack[top++] = operand;
+                case POOLED -> stack[top++] = this.constants[(int) operand];
+                case CELL -> stack[top++] = context.cell((int) (operand >> OFFSET_BITS),
+                        (int) (operand << (64 - OFFSET_BITS) >> (64 - OFFSET_BITS)));
+                case NAME -> stack[top++] = context.valueOf(this.names[(int) operand]);
+                case PLUS -> {
+                    int base = top - (int) operand;
+                    long result = stack[base];
+                    for (int i = base + 1; i < top; i++) {
+                        result += stack[i];
+                    }
+                    stack[base] = result;
+                    top = base + 1;
+                }
+                case MINUS -> {
+                    int base = top - (int) operand;
+                    long result = stack[base];
+                    for (int i = base + 1; i < top; i++) {
+                        result -= stack[i];
+                    }
+                    stack[base] = result;
+                    top = base + 1;
+                }
+                case TIMES -> {
+                    int base = top - (int) operand;
+                    long result = stack[base];
+                    for (int i = base + 1; i < top; i++) {
+                        result *= stack[i];
+                    }
+                    stack[base] = result;
+                    top = base + 1;
+                }
+                case DIVIDE -> {
+                    int base = top - (int) operand;
+                    long result = stack[base];
+                    for (int i = base + 1; i < top; i++) {
+                        if (stack[i] == 0) {
+                            context.fail(ErrorValue.DIV_ZERO);
+                            result = 0;
+                            break;
+                        }
+                        result /= stack[i];
+                    }
+                    stack[base] = result;
+                    top = base + 1;
+                }
+                case LESS -> {
+                    int base = top - (int) operand;
+                    long result = 1;
+                    for (int i = base + 1; i < top; i++) {
+                        if (stack[i - 1] >= stack[i]) {
+                            result = 0;
+                        }
+                    }
+                    stack[base] = result;
+                    top = base + 1;
+                }
+                case EQUAL -> {
+                    int base = top - (int) operand;
+                    long result = 1;
+                    for (int i = base + 1; i < top; i++) {
+                        if (stack[i] != stack[base]) {
+                            result = 0;
+                        }
+                    }
+                    stack[base] = result;
+                    top = base + 1;
+                }
+                default -> throw new IllegalStateException("Unknown opcode " + instruction);
+            }
+        }
+        return stack[frame];
+    }
+
+    /**
+     * Evaluate the formula to a primitive number. If the context is that of a cell, the formula
+     * is evaluated through its method handle once tiered up, and by running the program
+     * otherwise. Outside of a sheet, the source expression is evaluated.
+     *
+     * @param context The context to resolve references within and record errors to.
+     * @return The numeric value of the formula, or 0 if an error was recorded.
+     */
+    @Override
+    public long evalLong(EvalContext context) {
+        if (context instanceof CellContext cell) {
+            MethodHandle hot = this.handle;
+            if (hot != null) {
+                return invoke(hot, cell);
+            }
+            int threshold = cell.sheet().getTierUpThreshold();
+            if (!this.tiered && threshold > 0 && ++this.evaluations >= threshold) {
+                tierUp(cell.sheet());
+            }
+            return run(cell);
+        }
+        return this.source.evalLong(context);
+    }
+
+    /**
+     * The references depended upon by the source expression.
+     *
+     * @return A set containing all the transitive references of the source expression.
+     */
+    @Override
+    public Set<String> dependencies() {
+        return this.source.dependencies();
+    }
+
+    /**
+     * Evaluate the source expression to a numeric value.
+     *
+     * @return A long that represents the numeric value of the expression.
+     * @throws TypeError If the expression does not have a numeric value.
+     */
+    @Override
+    public long value() throws TypeError {
+        return this.source.value();
+    }
+
+    /**
+     * Evaluate the source expression.
+     *
+     * @param state A mapping of references to the expression they hold.
+     * @return The result of evaluating the source expression.
+     * @throws TypeError If a type error occurs in the process of evaluation.
+     */
+    @Override
+    public Expression value(Map<String, Expression> state) throws TypeError {
+        return this.source.value(state);
+    }
+
+    /**
+     * Replace the references within the source expression. The result is not compiled.
+     *
+     * @param replacement Maps each reference within the expression to its replacement.
+     * @param interner The interner to share copied nodes through, or null to not share them.
+     * @return Either the expression itself or a copy of the source with its references
+     * replaced.
+     */
+    @Override
+    public Expression rewrite(Function<Reference, Expression> replacement, Interner interner) {
+        Expression rewritten = this.source.rewrite(replacement, interner);
+        return rewritten == this.source ? this : rewritten;
+    }
+
+    /**
+     * Whether the source expression contains a relative reference.
+     *
+     * @return true if the source expression contains a relative reference.
+     */
+    @Override
+    public boolean isRelative() {
+        return this.source.isRelative();
+    }
+
+    /**
+     * If two compiled formulas are equal to each other. Equality is defined by having equal
+     * source expressions.
+     *
+     * @param obj another instance to compare against.
+     * @return true if the other object is a compiled formula of an equal expression.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof CompiledFormula other) {
+            return other.source.equals(this.source);
+        }
+        return false;
+    }
+
+    /**
+     * A hashcode method that respects the equals(Object) method.
+     *
+     * @return An appropriate hashcode value for this instance.
+     */
+    @Override
+    public int hashCode() {
+        return this.source.hashCode() * 13;
+    }
+
+    /**
+     * The string representation of the source expression.
+     *
+     * @return the string representation of the source expression.
+     */
+    @Override
+    public String render() {
+        return this.source.render();
+    }
+
+    /**
+     * String representation of the source expression.
+     *
+     * @return String representation of the source expression.
+     */
+    @Override
+    public String toString() {
+        return this.source.toString();
+    }
+
+    /**
+     * A growable stack of operands, holding the frames of the programs running on one thread.
+     */
+    private static final class OperandStack {
+
+        /**
+         * The operands of every frame.
+         */
+        private long[] values = new long[64];
+
+        /**
+         * The index after the last operand of the topmost frame.
+         */
+        private int top = 0;
+
+        /**
+         * Reserve a frame on top of the stack, growing the stack if needed.
+         *
+         * @param size The amount of operands the frame may hold.
+         * @return The array holding the frame, starting at the previous top of the stack.
+         */
+        private long[] reserve(int size) {
+            if (this.top + size > this.values.length) {
+                this.values = Arrays.copyOf(this.values,
+                        Math.max(this.values.length * 2, this.top + size));
+            }
+            this.top += size;
+            return this.values;
+        }
+    }
+
+    /**
+     * Translates an expression tree into postfix instructions.
+     */
+    private static class Compiler {
+
+        /**
+         * The instructions emitted so far.
+         */
+        private final List<Long> program = new ArrayList<>();
+
+        /**
+         * Constants that are too large to fit within an operand.
+         */
+        private final List<Long> constants = new ArrayList<>();
+
+        /**
+         * References that are not relative references to cells.
+         */
+        private final List<Reference> names = new ArrayList<>();
+
+        /**
+         * The amount of operands on the stack after the instructions emitted so far.
+         */
+        private int depth = 0;
+
+        /**
+         * The most operands on the stack at any one time.
+         */
+        private int maxDepth = 0;
+
+        /**
+         * Emit the instructions to push the value of an expression.
+         *
+         * @param expression The expression to compile.
+         * @return False if the expression contains something that cannot be compiled.
+         */
+        private boolean emit(Expression expression) {
+            if (expression instanceof Constant constant) {
+                long value = constant.getValue();
+                if (fitsOperand(value)) {
+                    push(CONSTANT, value);
+                } else {
+                    push(POOLED, this.constants.size());
+                    this.constants.add(value);
+                }
+                return true;
+            }
+            if (expression instanceof Reference reference) {
+                int rows = reference.getRowOffset();
+                int columns = reference.getColumnOffset();
+                if (reference.isRelative() && fitsOffset(rows) && fitsOffset(columns)) {
+                    push(CELL, ((long) rows << OFFSET_BITS)
+                            | (columns & ((1L << OFFSET_BITS) - 1)));
+                } else {
+                    push(NAME, this.names.size());
+                    this.names.add(reference);
+                }
+                return true;
+            }
+            if (expression instanceof Arithmetic arithmetic) {
+                int opcode = OPERATORS.indexOf(arithmetic.getOperator());
+                if (opcode < 0) {
+                    return false;
+                }
+                for (int i = 0; i < arithmetic.argumentCount(); i++) {
+                    if (!emit(arithmetic.argument(i).simplified())) {
+                        return false;
+                    }
+                }
+                this.program.add(((long) arithmetic.argumentCount() << OPCODE_BITS)
+                        | (PLUS + opcode));
+                this.depth -= arithmetic.argumentCount() - 1;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Emit an instruction that pushes one operand onto the stack.
+         *
+         * @param opcode The opcode of the instruction.
+         * @param operand The operand of the instruction.
+         */
+        private void push(int opcode, long operand) {
+            this.program.add((operand << OPCODE_BITS) | opcode);
+            this.depth++;
+            this.maxDepth = Math.max(this.maxDepth, this.depth);
+        }
+
+        /**
+         * Whether a constant fits within the operand bits of an instruction.
+         *
+         * @param value The constant.
+         * @return True if the constant can be held by the instruction itself.
+         */
+        private static boolean fitsOperand(long value) {
+            return value << OPCODE_BITS >> OPCODE_BITS == value;
+        }
+
+        /**
+         * Whether a row or column offset fits within its half of a cell operand.
+         *
+         * @param offset The offset.
+         * @return True if the offset can be packed into a cell operand.
+         */
+        private static boolean fitsOffset(int offset) {
+            return offset >= -(1 << (OFFSET_BITS - 1)) && offset < 1 << (OFFSET_BITS - 1);
+        }
+    }
+}
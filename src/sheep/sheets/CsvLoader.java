@@ -0,0 +1,312 @@
+package sheep.sheets;
+
+import sheep.core.UpdateResponse;
+import sheep.expression.TypeError;
+import sheep.parsing.ParseException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Loads delimited text, such as CSV or TSV files, into a sheet.
+ * The file is streamed through a fixed size buffer and split into fields byte by byte, so lines
+ * are never materialised as strings and memory use does not grow with the size of the file.
+ * Each field is loaded into the cell at its line and position within the line, starting from
+ * the top left cell. Fields that are plain integers are stored as constants directly, and any
+ * other field is parsed by the sheet's parser. Empty fields leave their cell unchanged.
+ * Fields may be quoted with double quotes, in which case they may contain the delimiter, line
+ * breaks, and doubled double quotes.
+ * Cells are written straight into the sheet without recalculating. The loaded formulas and the
+ * cells depending on loaded cells are recalculated once, after the whole file has been loaded.
+ */
+public class CsvLoader {
+
+    /**
+     * Amount of bytes read from the file at a time.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The most digits a field may have to be stored as a constant without being parsed.
+     */
+    private static final int MAX_DIGITS = 18;
+
+    /**
+     * The sheet to load into.
+     */
+    private final Sheet sheet;
+
+    /**
+     * The byte separating fields within a line.
+     */
+    private final byte delimiter;
+
+    /**
+     * The bytes of the field being read.
+     */
+    private byte[] field = new byte[64];
+
+    /**
+     * Amount of bytes of the field being read.
+     */
+    private int length;
+
+    /**
+     * Whether the field being read started with a quote.
+     */
+    private boolean quoted;
+
+    /**
+     * Whether the reader is between the quotes of a quoted field.
+     */
+    private boolean inQuotes;
+
+    /**
+     * The row of the field being read.
+     */
+    private int row;
+
+    /**
+     * The column of the field being read.
+     */
+    private int column;
+
+    /**
+     * Loaded cells that must be recalculated, or that other cells depend on and so must be
+     * recalculated from.
+     */
+    private List<CellLocation> loaded;
+
+    /**
+     * Amount of fields that could not be loaded.
+     */
+    private int failures;
+
+    /**
+     * The reason the first field that could not be loaded failed.
+     */
+    private String firstFailure;
+
+    /**
+     * Construct a loader for text delimited by the given character.
+     *
+     * @param sheet The sheet to load into.
+     * @param delimiter The character separating fields within a line.
+     * @requires delimiter is an ASCII character other than a double quote or a line break.
+     */
+    public CsvLoader(Sheet sheet, char delimiter) {
+        this.sheet = sheet;
+        this.delimiter = (byte) delimiter;
+    }
+
+    /**
+     * Construct a loader for comma separated values.
+     *
+     * @param sheet The sheet to load into.
+     * @return A loader for CSV files.
+     */
+    public static CsvLoader csv(Sheet sheet) {
+        return new CsvLoader(sheet, ',');
+    }
+
+    /**
+     * Construct a loader for tab separated values.
+     *
+     * @param sheet The sheet to load into.
+     * @return A loader for TSV files.
+     */
+    public static CsvLoader tsv(Sheet sheet) {
+        return new CsvLoader(sheet, '\t');
+    }
+
+    /**
+     * Load a UTF-8 encoded file into the sheet.
+     * Fields that cannot be parsed, that would create a cyclic reference, or that lie outside of
+     * the sheet are skipped, and the rest of the file is still loaded.
+     *
+     * @param path The file to load.
+     * @return Information about the status of the load, failing if any field was skipped.
+     * @throws IOException If the file cannot be read.
+     */
+    public UpdateResponse load(Path path) throws IOException {
+        this.length = 0;
+        this.quoted = false;
+        this.inQuotes = false;
+        this.row = 0;
+        this.column = 0;
+        this.loaded = new ArrayList<>();
+        this.failures = 0;
+        this.firstFailure = null;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            byte[] bytes = buffer.array();
+            boolean first = true;
+            while (channel.read(buffer) >= 0) {
+                int start = 0;
+                if (first && buffer.position() >= 3 && bytes[0] == (byte) 0xEF
+                        && bytes[1] == (byte) 0xBB && bytes[2] == (byte) 0xBF) {
+                    start = 3;
+                }
+                first = false;
+                for (int i = start; i < buffer.position(); i++) {
+                    accept(bytes[i]);
+                }
+                buffer.clear();
+            }
+        }
+        if (this.length > 0 || this.quoted || this.column > 0) {
+            endField();
+        }
+
+        this.sheet.commitLoad(this.loaded);
+        this.loaded = null;
+        if (this.failures > 0) {
+            return UpdateResponse.fail(String.format("%d fields could not be loaded, the first: %s",
+                    this.failures, this.firstFailure));
+        }
+        return UpdateResponse.success();
+    }
+
+    /**
+     * Read the next byte of the file.
+     *
+     * @param next The next byte of the file.
+     */
+    private void accept(byte next) {
+        if (this.inQuotes) {
+            if (next == '"') {
+                this.inQuotes = false;
+            } else {
+                append(next);
+            }
+        } else if (next == '"' && this.quoted) {
+            // A quote straight after the closing quote is an escaped quote.
+            append(next);
+            this.inQuotes = true;
+        } else if (next == '"' && this.length == 0) {
+            this.quoted = true;
+            this.inQuotes = true;
+        } else if (next == this.delimiter) {
+            endField();
+        } else if (next == '\n') {
+            endField();
+            this.row++;
+            this.column = 0;
+        } else if (next != '\r') {
+            append(next);
+        }
+    }
+
+    /**
+     * Append a byte to the field being read, growing the field buffer if needed.
+     *
+     * @param next The byte to append.
+     */
+    private void append(byte next) {
+        if (this.length == this.field.length) {
+            this.field = Arrays.copyOf(this.field, this.length * 2);
+        }
+        this.field[this.length++] = next;
+    }
+
+    /**
+     * Load the field that has been read into its cell, and move on to the next column.
+     */
+    private void endField() {
+        int start = 0;
+        int end = this.length;
+        while (start < end && this.field[start] == ' ') {
+            start++;
+        }
+        while (end > start && this.field[end - 1] == ' ') {
+            end--;
+        }
+        if (start < end) {
+            loadField(start, end);
+        }
+        this.length = 0;
+        this.quoted = false;
+        this.column++;
+    }
+
+    /**
+     * Load a non-empty field into the cell at the current row and column.
+     *
+     * @param start The index of the first byte of the field.
+     * @param end The index after the last byte of the field.
+     */
+    private void loadField(int start, int end) {
+        CellLocation location = CellLocation.of(this.row, this.column);
+        if (this.row >= this.sheet.getRows() || this.column >= this.sheet.getColumns()) {
+            fail(location, "Outside of the sheet");
+            return;
+        }
+        boolean recalculate;
+        long number = number(start, end);
+        if (number != Long.MIN_VALUE) {
+            recalculate = this.sheet.load(this.row, this.column, number);
+        } else {
+            String input = new String(this.field, start, end - start, StandardCharsets.UTF_8);
+            try {
+                recalculate = this.sheet.load(this.row, this.column, this.sheet.parse(input));
+            } catch (ParseException e) {
+                fail(location, String.format("Unable to parse: [%s]", input));
+                return;
+            } catch (TypeError e) {
+                fail(location, String.format("Type error: [%s]", e.getMessage()));
+                return;
+            }
+        }
+        if (recalculate) {
+            this.loaded.add(location);
+        }
+    }
+
+    /**
+     * The value of a field that is a plain integer, an optional minus sign followed by digits.
+     *
+     * @param start The index of the first byte of the field.
+     * @param end The index after the last byte of the field.
+     * @return The value of the field, or Long.MIN_VALUE if it is not a plain integer that is
+     * small enough to be read without checking for overflow.
+     */
+    private long number(int start, int end) {
+        boolean negative = this.field[start] == '-';
+        if (negative) {
+            start++;
+        }
+        if (start == end || end - start > MAX_DIGITS) {
+            return Long.MIN_VALUE;
+        }
+        long number = 0;
+        for (int i = start; i < end; i++) {
+            int digit = this.field[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return Long.MIN_VALUE;
+            }
+            number = number * 10 + digit;
+        }
+        return negative ? -number : number;
+    }
+
+    /**
+     * Record that a field could not be loaded.
+     *
+     * @param location The cell the field would have been loaded into.
+     * @param reason Why the field could not be loaded.
+     */
+    private void fail(CellLocation location, String reason) {
+        if (this.failures == 0) {
+            this.firstFailure = String.format("%s at %s", reason, location);
+        }
+        this.failures++;
+    }
+}
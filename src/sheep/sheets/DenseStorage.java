@@ -0,0 +1,205 @@
+package sheep.sheets;
+
+import sheep.expression.Expression;
+import sheep.expression.basic.Constant;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cell storage for bounded grids, backed by flat arrays indexed by row * columns + column.
+ * Numeric values are held as primitive longs alongside a bitset that records which cells
+ * hold a number. The few values that are not numeric are kept in a separate map.
+ */
+class DenseStorage implements CellStorage {
+
+    /**
+     * Amount of columns in the grid, used to compute the index of a cell.
+     */
+    private final int columns;
+
+    /**
+     * The formula of each cell.
+     */
+    private final Expression[] formulas;
+
+    /**
+     * The numeric value of each cell, only meaningful where numeric is set.
+     */
+    private final long[] numbers;
+
+    /**
+     * Which cells hold a numeric value.
+     */
+    private final BitSet numeric;
+
+    /**
+     * The calculation state recorded against the value of each cell.
+     */
+    private final byte[] states;
+
+    /**
+     * Values of cells which are not numeric, keyed by index.
+     */
+    private final Map<Integer, Expression> others = new HashMap<>();
+
+    /**
+     * Constructs storage for a grid of the given size.
+     *
+     * @param rows Amount of rows in the grid.
+     * @param columns Amount of columns in the grid.
+     * @requires rows > 0, columns > 0, rows * columns <= Integer.MAX_VALUE.
+     */
+    DenseStorage(int rows, int columns) {
+        this.columns = columns;
+        this.formulas = new Expression[rows * columns];
+        this.numbers = new long[rows * columns];
+        this.numeric = new BitSet(rows * columns);
+        this.states = new byte[rows * columns];
+    }
+
+    /**
+     * The position of a cell within the flat arrays.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @return The index of the cell.
+     */
+    private int index(int row, int column) {
+        return row * this.columns + column;
+    }
+
+    /**
+     * The formula stored at the given position.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @return The formula at the position, or null if the cell is empty.
+     */
+    @Override
+    public Expression formulaAt(int row, int column) {
+        return this.formulas[index(row, column)];
+    }
+
+    /**
+     * Store a formula at the given position.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @param formula The formula to store, or null to empty the cell.
+     */
+    @Override
+    public void setFormula(int row, int column, Expression formula) {
+        this.formulas[index(row, column)] = formula;
+    }
+
+    /**
+     * The calculated value stored at the given position.
+     * Numeric values are returned as a new constant expression.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @return The value at the position, or null if no value has been calculated.
+     */
+    @Override
+    public Expression valueAt(int row, int column) {
+        int index = index(row, column);
+        if (this.numeric.get(index)) {
+            return new Constant(this.numbers[index]);
+        }
+        return this.others.get(index);
+    }
+
+    /**
+     * Store a calculated value at the given position.
+     * Constant values are unboxed into the primitive array.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @param value The value to store, or null to clear the value.
+     */
+    @Override
+    public void setValue(int row, int column, Expression value) {
+        int index = index(row, column);
+        if (value instanceof Constant constant) {
+            this.numbers[index] = constant.getValue();
+            this.numeric.set(index);
+            this.others.remove(index);
+        } else {
+            this.numeric.clear(index);
+            if (value == null) {
+                this.others.remove(index);
+            } else {
+                this.others.put(index, value);
+            }
+        }
+    }
+
+    /**
+     * Whether the value at the given position is numeric.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @return True if the cell holds a numeric value.
+     */
+    @Override
+    public boolean isNumeric(int row, int column) {
+        return this.numeric.get(index(row, column));
+    }
+
+    /**
+     * The numeric value stored at the given position.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @return The numeric value of the cell.
+     * @requires isNumeric(row, column).
+     */
+    @Override
+    public long numberAt(int row, int column) {
+        return this.numbers[index(row, column)];
+    }
+
+    /**
+     * The calculation state recorded against the value at the given position.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @return The state of the cell, zero if none has been recorded.
+     */
+    @Override
+    public byte stateAt(int row, int column) {
+        return this.states[index(row, column)];
+    }
+
+    /**
+     * Record a calculation state against the value at the given position.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @param state The state to record.
+     */
+    @Override
+    public void setState(int row, int column, byte state) {
+        this.states[index(row, column)] = state;
+    }
+
+    /**
+     * The cells that hold a formula, in row-major order.
+     *
+     * @return A new list of the locations of every non-empty cell.
+     */
+    @Override
+    public List<CellLocation> filled() {
+        List<CellLocation> filled = new ArrayList<>();
+        for (int i = 0; i < this.formulas.length; i++) {
+            if (this.formulas[i] != null) {
+                filled.add(CellLocation.of(i / this.columns, i % this.columns));
+            }
+        }
+        return filled;
+    }
+}
@@ -0,0 +1,245 @@
+package sheep.sheets;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dependency graph between the cells of a sheet.
+ * The graph stores both directions of every edge so that the precedents of a cell (the cells
+ * its formula reads) and the dependents of a cell (the cells whose formulas read it) can each be
+ * found without scanning the rest of the sheet.
+ */
+class DependencyGraph {
+
+    /**
+     * Forward adjacency, maps a cell to the cells its formula refers to.
+     */
+    private final Map<CellLocation, Set<CellLocation>> precedents = new HashMap<>();
+
+    /**
+     * Reverse adjacency, maps a cell to the cells whose formulas refer to it.
+     */
+    private final Map<CellLocation, Set<CellLocation>> dependents = new HashMap<>();
+
+    /**
+     * Replace the outgoing edges of a cell with a new set of precedents.
+     * Edges that are no longer referred to are removed from both directions of the graph.
+     *
+     * @param cell The cell whose formula has changed.
+     * @param references The cells referred to by the new formula of the cell.
+     * @requires cell != null, references != null.
+     */
+    public void replace(CellLocation cell, Set<CellLocation> references) {
+        Set<CellLocation> old = this.precedents.remove(cell);
+        if (old != null) {
+            for (CellLocation precedent : old) {
+                Set<CellLocation> users = this.dependents.get(precedent);
+                users.remove(cell);
+                if (users.isEmpty()) {
+                    this.dependents.remove(precedent);
+                }
+            }
+        }
+        if (references.isEmpty()) {
+            return;
+        }
+        this.precedents.put(cell, new HashSet<>(references));
+        for (CellLocation precedent : references) {
+            this.dependents.computeIfAbsent(precedent, key -> new HashSet<>()).add(cell);
+        }
+    }
+
+    /**
+     * The cells that the formula at the given cell refers to.
+     *
+     * @param cell A cell within the graph.
+     * @return An unmodifiable view of the direct precedents of the cell.
+     */
+    public Set<CellLocation> precedentsOf(CellLocation cell) {
+        return Collections.unmodifiableSet(this.precedents.getOrDefault(cell, Set.of()));
+    }
+
+    /**
+     * The cells whose formulas refer directly to the given cell.
+     *
+     * @param cell A cell within the graph.
+     * @return An unmodifiable view of the direct dependents of the cell.
+     */
+    public Set<CellLocation> dependentsOf(CellLocation cell) {
+        return Collections.unmodifiableSet(this.dependents.getOrDefault(cell, Set.of()));
+    }
+
+    /**
+     * Every cell that depends on the given cell, either directly or through other cells.
+     * The given cell is only included if it is part of a cycle.
+     *
+     * @param cell A cell within the graph.
+     * @return A new set containing the transitive dependents of the cell.
+     */
+    public Set<CellLocation> transitiveDependentsOf(CellLocation cell) {
+        Set<CellLocation> visited = new HashSet<>();
+        Deque<CellLocation> pending = new ArrayDeque<>();
+        pending.push(cell);
+        while (!pending.isEmpty()) {
+            for (CellLocation dependent : dependentsOf(pending.pop())) {
+                if (visited.add(dependent)) {
+                    pending.push(dependent);
+                }
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * The given cells together with every cell that depends on any of them, either directly or
+     * through other cells.
+     *
+     * @param cells The cells that have changed.
+     * @return A new set containing the cells and their transitive dependents.
+     */
+    public Set<CellLocation> affectedBy(Collection<CellLocation> cells) {
+        Set<CellLocation> visited = new HashSet<>(cells);
+        Deque<CellLocation> pending = new ArrayDeque<>(visited);
+        while (!pending.isEmpty()) {
+            for (CellLocation dependent : dependentsOf(pending.pop())) {
+                if (visited.add(dependent)) {
+                    pending.push(dependent);
+                }
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Whether giving a cell the given precedents would close a cycle.
+     * As the graph is kept acyclic, a cycle can only be formed if the cell itself is one of the
+     * new precedents, or if one of them already depends on the cell. Only the cells reachable
+     * from the given cell along dependent edges are visited, and the search stops as soon as a
+     * cycle is found.
+     *
+     * @param cell The cell whose formula is about to change.
+     * @param references The cells referred to by the new formula of the cell.
+     * @return True if the new edges would form a cycle.
+     */
+    public boolean wouldCycle(CellLocation cell, Set<CellLocation> references) {
+        if (references.isEmpty()) {
+            return false;
+        }
+        if (references.contains(cell)) {
+            return true;
+        }
+        Set<CellLocation> visited = new HashSet<>();
+        Deque<CellLocation> pending = new ArrayDeque<>();
+        pending.push(cell);
+        while (!pending.isEmpty()) {
+            for (CellLocation dependent : dependentsOf(pending.pop())) {
+                if (references.contains(dependent)) {
+                    return true;
+                }
+                if (visited.add(dependent)) {
+                    pending.push(dependent);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Order a set of cells so that every cell comes after all of its precedents within the set.
+     * Cells that are part of a cycle can never be ordered and are left out of the result.
+     *
+     * @param cells The cells to order.
+     * @return The cells in topological order.
+     */
+    public List<CellLocation> topologicalOrder(Set<CellLocation> cells) {
+        Map<CellLocation, Integer> waiting = new HashMap<>();
+        Deque<CellLocation> ready = new ArrayDeque<>();
+        for (CellLocation cell : cells) {
+            int count = 0;
+            for (CellLocation precedent : precedentsOf(cell)) {
+                if (cells.contains(precedent)) {
+                    count++;
+                }
+            }
+            if (count == 0) {
+                ready.add(cell);
+            } else {
+                waiting.put(cell, count);
+            }
+        }
+        List<CellLocation> order = new ArrayList<>(cells.size());
+        while (!ready.isEmpty()) {
+            CellLocation cell = ready.poll();
+            order.add(cell);
+            for (CellLocation dependent : dependentsOf(cell)) {
+                Integer count = waiting.get(dependent);
+                if (count == null) {
+                    continue;
+                }
+                if (count == 1) {
+                    waiting.remove(dependent);
+                    ready.add(dependent);
+                } else {
+                    waiting.put(dependent, count - 1);
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Split a set of cells into levels so that every cell is in a later level than all of its
+     * precedents within the set. Cells within the same level do not depend on each other and
+     * so may be evaluated in any order, or at the same time.
+     * Cells that are part of a cycle can never be ordered and are left out of the result.
+     *
+     * @param cells The cells to split into levels.
+     * @return The levels of cells, in topological order.
+     */
+    public List<List<CellLocation>> topologicalLevels(Set<CellLocation> cells) {
+        Map<CellLocation, Integer> waiting = new HashMap<>();
+        List<CellLocation> level = new ArrayList<>();
+        for (CellLocation cell : cells) {
+            int count = 0;
+            for (CellLocation precedent : precedentsOf(cell)) {
+                if (cells.contains(precedent)) {
+                    count++;
+                }
+            }
+            if (count == 0) {
+                level.add(cell);
+            } else {
+                waiting.put(cell, count);
+            }
+        }
+        List<List<CellLocation>> levels = new ArrayList<>();
+        while (!level.isEmpty()) {
+            levels.add(level);
+            List<CellLocation> next = new ArrayList<>();
+            for (CellLocation cell : level) {
+                for (CellLocation dependent : dependentsOf(cell)) {
+                    Integer count = waiting.get(dependent);
+                    if (count == null) {
+                        continue;
+                    }
+                    if (count == 1) {
+                        waiting.remove(dependent);
+                        next.add(dependent);
+                    } else {
+                        waiting.put(dependent, count - 1);
+                    }
+                }
+            }
+            level = next;
+        }
+        return levels;
+    }
+}
@@ -8,9 +8,6 @@ import sheep.expression.Expression;
 import sheep.parsing.ParseException;
 import sheep.parsing.Parser;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * Spreadsheet that displays the expressions it holds without evaluating the expressions.
  */
@@ -19,7 +16,7 @@ public class DisplaySheet implements SheetUpdate, SheetView {
     private final int row;
     private final int columns;
     private final Expression defaultExpression;
-    private final Map<String, Expression> rowColumnInput = new HashMap<>();
+    private final Expression[] cells;
 
     /**
      * Constructor
@@ -34,6 +31,7 @@ public class DisplaySheet implements SheetUpdate, SheetView {
         this.row = row;
         this.columns = columns;
         this.defaultExpression = defaultExpression;
+        this.cells = new Expression[row * columns];
     }
 
     /**
@@ -46,11 +44,8 @@ public class DisplaySheet implements SheetUpdate, SheetView {
      * @requires 0 ≤ row < getRows(), 0 ≤ column < getColumns().
      */
     public UpdateResponse update(int row, int column, String input) {
-        String rowColumn;
         try {
-            Expression expression = this.parser.parse(input);
-            rowColumn = Integer.toString(row) + ',' + Integer.toString(column);
-            rowColumnInput.put(rowColumn, expression);
+            cells[row * this.columns + column] = this.parser.parse(input);
             return UpdateResponse.success();
         } catch (ParseException e) {
             return UpdateResponse.fail(String.format("Unable to parse: %s", input));
@@ -84,13 +79,9 @@ public class DisplaySheet implements SheetUpdate, SheetView {
      * @requires 0 ≤ row < getRows(), 0 ≤ column < getColumns().
      */
     public ViewElement valueAt(int row, int column) {
-        for (Map.Entry<String, Expression> eachCell : rowColumnInput.entrySet()) {
-            String key = eachCell.getKey();
-            int cellRow = Integer.parseInt(key.split(",")[0]);
-            int cellColumn = Integer.parseInt(key.split(",")[1]);
-            if (row == cellRow && column == cellColumn) {
-                return new ViewElement(eachCell.getValue().render(), "white", "black");
-            }
+        Expression cell = cells[row * this.columns + column];
+        if (cell != null) {
+            return new ViewElement(cell.render(), "white", "black");
         }
         return new ViewElement(this.defaultExpression.render(), "white", "black");
     }
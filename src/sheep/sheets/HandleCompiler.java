@@ -0,0 +1,219 @@
+package sheep.sheets;
+
+import sheep.expression.Expression;
+import sheep.expression.arithmetic.Arithmetic;
+import sheep.expression.basic.Constant;
+import sheep.expression.basic.ErrorValue;
+import sheep.expression.basic.Reference;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Compiles formulas to chains of method handles, for formulas that are evaluated often.
+ * Each node of the formula becomes a method handle taking the context of the cell being
+ * evaluated and returning its value, and the handles of an operator's arguments are folded into
+ * the handle of the operator. Once the chain is hot, the JIT compiler can inline the whole
+ * formula into a single method that reads the cells it refers to straight from the sheet.
+ * <p>
+ * Operands are evaluated left to right and only the first error is kept, matching
+ * Expression.evalLong.
+ */
+final class HandleCompiler {
+
+    /**
+     * The type of a binary operator, taking both operands and the context to record errors to.
+     */
+    private static final MethodType OPERATOR = MethodType.methodType(long.class,
+            long.class, long.class, CellContext.class);
+
+    /**
+     * CellContext.cell(int, int), reading a cell at an offset.
+     */
+    private static final MethodHandle CELL;
+
+    /**
+     * CellContext.valueOf(Reference), resolving any other reference.
+     */
+    private static final MethodHandle VALUE_OF;
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            CELL = lookup.findVirtual(CellContext.class, "cell",
+                    MethodType.methodType(long.class, int.class, int.class));
+            VALUE_OF = lookup.findVirtual(CellContext.class, "valueOf",
+                    MethodType.methodType(long.class, Reference.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Not instantiable.
+     */
+    private HandleCompiler() {
+    }
+
+    /**
+     * Compile an expression to a method handle, if it is made only of arithmetic, constants and
+     * references.
+     *
+     * @param expression The expression to compile.
+     * @return A method handle of type (CellContext)long evaluating the expression, or null if
+     * the expression cannot be compiled.
+     */
+    static MethodHandle compile(Expression expression) {
+        expression = expression.simplified();
+        if (expression instanceof Constant constant) {
+            return MethodHandles.dropArguments(
+                    MethodHandles.constant(long.class, constant.getValue()),
+                    0, CellContext.class);
+        }
+        if (expression instanceof Reference reference) {
+            if (reference.isRelative()) {
+                return MethodHandles.insertArguments(CELL, 1,
+                        reference.getRowOffset(), reference.getColumnOffset());
+            }
+            return MethodHandles.insertArguments(VALUE_OF, 1, reference);
+        }
+        if (expression instanceof Arithmetic arithmetic) {
+            return compile(arithmetic);
+        }
+        return null;
+    }
+
+    /**
+     * Compile an operator by folding its arguments together from the left.
+     *
+     * @param arithmetic The operator to compile.
+     * @return A method handle evaluating the operator, or null if it cannot be compiled.
+     */
+    private static MethodHandle compile(Arithmetic arithmetic) {
+        MethodHandle operator = operator(arithmetic.getOperator(),
+                arithmetic.argumentCount());
+        if (operator == null) {
+            return null;
+        }
+        MethodHandle result = compile(arithmetic.argument(0));
+        for (int i = 1; i < arithmetic.argumentCount() && result != null; i++) {
+            MethodHandle next = compile(arithmetic.argument(i));
+            if (next == null) {
+                return null;
+            }
+            // (long, CellContext, CellContext) -> (long, CellContext), so that the left value
+            // is computed first and then combined with the right operand.
+            MethodHandle right = MethodHandles.permuteArguments(
+                    MethodHandles.filterArguments(operator, 1, next),
+                    MethodType.methodType(long.class, long.class, CellContext.class), 0, 1, 1);
+            result = MethodHandles.foldArguments(right, result);
+        }
+        return result;
+    }
+
+    /**
+     * The binary operator to fold the arguments of an operator with.
+     *
+     * @param name The name of the operator.
+     * @param arguments The amount of arguments of the operator.
+     * @return A method handle of type (long, long, CellContext)long, or null if the operator
+     * cannot be folded over its arguments.
+     */
+    private static MethodHandle operator(String name, int arguments) {
+        String method;
+        switch (name) {
+            case "+" -> method = "plus";
+            case "-" -> method = "minus";
+            case "*" -> method = "times";
+            case "/" -> method = "divide";
+            // Comparisons chain over their arguments, so only two can be folded.
+            case "<" -> method = arguments == 2 ? "less" : null;
+            case "=" -> method = arguments == 2 ? "equal" : null;
+            default -> method = null;
+        }
+        if (method == null) {
+            return null;
+        }
+        try {
+            return MethodHandles.lookup().findStatic(HandleCompiler.class, method, OPERATOR);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The sum of two values.
+     *
+     * @param left The left operand.
+     * @param right The right operand.
+     * @param context The context to record errors to.
+     * @return left + right.
+     */
+    private static long plus(long left, long right, CellContext context) {
+        return left + right;
+    }
+
+    /**
+     * The difference of two values.
+     *
+     * @param left The left operand.
+     * @param right The right operand.
+     * @param context The context to record errors to.
+     * @return left - right.
+     */
+    private static long minus(long left, long right, CellContext context) {
+        return left - right;
+    }
+
+    /**
+     * The product of two values.
+     *
+     * @param left The left operand.
+     * @param right The right operand.
+     * @param context The context to record errors to.
+     * @return left * right.
+     */
+    private static long times(long left, long right, CellContext context) {
+        return left * right;
+    }
+
+    /**
+     * The quotient of two values, failing if the right operand is zero.
+     *
+     * @param left The left operand.
+     * @param right The right operand.
+     * @param context The context to record errors to.
+     * @return left / right, or 0 if an error was recorded.
+     */
+    private static long divide(long left, long right, CellContext context) {
+        if (right == 0) {
+            return context.fail(ErrorValue.DIV_ZERO);
+        }
+        return left / right;
+    }
+
+    /**
+     * Whether one value is less than another.
+     *
+     * @param left The left operand.
+     * @param right The right operand.
+     * @param context The context to record errors to.
+     * @return 1 if left is less than right, otherwise 0.
+     */
+    private static long less(long left, long right, CellContext context) {
+        return left < right ? 1 : 0;
+    }
+
+    /**
+     * Whether two values are equal.
+     *
+     * @param left The left operand.
+     * @param right The right operand.
+     * @param context The context to record errors to.
+     * @return 1 if left is equal to right, otherwise 0.
+     */
+    private static long equal(long left, long right, CellContext context) {
+        return left == right ? 1 : 0;
+    }
+}
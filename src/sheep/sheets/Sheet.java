@@ -1,15 +1,27 @@
 package sheep.sheets;
 
+import sheep.core.CellEdit;
 import sheep.core.SheetUpdate;
 import sheep.core.SheetView;
 import sheep.core.UpdateResponse;
 import sheep.core.ViewElement;
 import sheep.expression.Expression;
+import sheep.expression.EvalContext;
+import sheep.expression.Interner;
 import sheep.expression.TypeError;
+import sheep.expression.arithmetic.Arithmetic;
+import sheep.expression.basic.Constant;
+import sheep.expression.basic.ErrorValue;
+import sheep.expression.basic.Nothing;
+import sheep.expression.basic.Reference;
 import sheep.parsing.ParseException;
 import sheep.parsing.Parser;
 
+import java.lang.ref.WeakReference;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Spreadsheet that evaluates its expressions and updates dependant cells.
@@ -23,9 +35,14 @@ public class Sheet implements SheetView, SheetUpdate {
     private final Parser parser;
 
     /**
-     * A mapping of built-in identifiers to expressions.
+     * The state that formulas are evaluated against, resolving cells and built-ins on demand.
      */
-    private final Map<String, Expression> builtIns;
+    private final SheetState state;
+
+    /**
+     * The built-ins of the sheet, which references are bound to as formulas are stored.
+     */
+    private final SymbolTable symbols;
 
     /**
      * The default expression to load in every cell.
@@ -42,28 +59,111 @@ public class Sheet implements SheetView, SheetUpdate {
      */
     private final int columns;
 
-    private final Map<CellLocation, Expression> expressionAtLocation = new HashMap<>();
+    /**
+     * The formula entered into each cell and its most recently calculated value.
+     */
+    private final CellStorage storage;
+
+    /**
+     * Which cells refer to which, kept up to date as cells are updated.
+     */
+    private final DependencyGraph graph = new DependencyGraph();
+
+    /**
+     * Canonical formulas and sub-formulas with relative cell references, so that every cell
+     * holding a formula of the same shape, such as a filled column, shares a single expression.
+     */
+    private final Interner templates = new Interner();
+
+    /**
+     * The compiled form of each shared formula, or the formula itself if it cannot be
+     * compiled, so that each shape of formula is only compiled once. Both are held weakly, so
+     * a formula no longer held by any cell is dropped.
+     */
+    private final Map<Expression, WeakReference<Expression>> compiledTemplates =
+            new WeakHashMap<>();
+
+    /**
+     * The pool used to evaluate independent cells in parallel, or null if recalculation
+     * is always performed on the calling thread.
+     */
+    private ForkJoinPool pool = null;
+
+    /**
+     * The least amount of cells that must be recalculated together before work is split
+     * across the pool.
+     */
+    private int parallelThreshold = Integer.MAX_VALUE;
+
+    /**
+     * Whether formulas are compiled to postfix programs as they are stored.
+     */
+    private boolean compiling = false;
+
+    /**
+     * Amount of evaluations after which a compiled formula is compiled to a method handle,
+     * or 0 if formulas are never tiered up.
+     */
+    private int tierUpThreshold = 0;
+
+    /**
+     * Amount of cells whose formula has been tiered up to a method handle, maintained as
+     * formulas are tiered up and as cells are given new formulas.
+     */
+    private final AtomicInteger compiledCells = new AtomicInteger();
+
+    /**
+     * State of a cell whose cached value is missing or out of date.
+     */
+    private static final byte STALE = 0;
+
+    /**
+     * State of a cell whose value is currently being calculated.
+     */
+    private static final byte CALCULATING = 1;
 
-    private final Set<CellLocation> usedCell = new HashSet<>();
+    /**
+     * State of a cell whose cached value is up to date.
+     */
+    private static final byte VALID = 2;
 
     /**
      * Constructs a new instance of the sheet class.
      * A sheet should initially be populated in every cell with the defaultExpression.
      *
      * @param parser The parser instance used to create expressions.
-     * @param builtIns A mapping of built-in identifiers to expressions.
+     * @param builtIns The frozen built-ins of the sheet.
      * @param defaultExpression The default expression to load in every cell.
      * @param rows Amount of rows for the new sheet.
      * @param columns  Amount of columns for the new sheet.
-     * @requires rows > 0, columns > 0 && columns < 26.
+     * @requires rows > 0, columns > 0, rows * columns <= Integer.MAX_VALUE.
      */
-    Sheet(Parser parser, Map<String, Expression> builtIns,
+    Sheet(Parser parser, SymbolTable builtIns,
           Expression defaultExpression, int rows, int columns) {
+        this(parser, builtIns, defaultExpression, rows, columns,
+                new DenseStorage(rows, columns));
+    }
+
+    /**
+     * Constructs a new instance of the sheet class that keeps its cells in the given storage.
+     *
+     * @param parser The parser instance used to create expressions.
+     * @param builtIns The frozen built-ins of the sheet.
+     * @param defaultExpression The default expression to load in every cell.
+     * @param rows Amount of rows for the new sheet.
+     * @param columns  Amount of columns for the new sheet.
+     * @param storage Empty storage large enough to hold rows by columns cells.
+     * @requires rows > 0, columns > 0.
+     */
+    Sheet(Parser parser, SymbolTable builtIns,
+          Expression defaultExpression, int rows, int columns, CellStorage storage) {
         this.parser = parser;
-        this.builtIns = builtIns;
         this.defaultExpression = defaultExpression;
         this.rows = rows;
         this.columns = columns;
+        this.storage = storage;
+        this.symbols = builtIns;
+        this.state = new SheetState(this, builtIns);
     }
 
     /**
@@ -95,12 +195,7 @@ public class Sheet implements SheetView, SheetUpdate {
      * @requires location is within the bounds (row/columns) of the spreadsheet.
      */
     public ViewElement valueAt(int row, int column) {
-        CellLocation newCell = new CellLocation(row, column);
-        if (expressionAtLocation.containsKey(newCell)) {
-            return new ViewElement(valueAt(newCell).render(),
-                    "white", "black");
-        }
-        return new ViewElement(this.defaultExpression.render(), "white", "black");
+        return new ViewElement(displayedValue(row, column).render(), "white", "black");
     }
 
     /**
@@ -114,13 +209,8 @@ public class Sheet implements SheetView, SheetUpdate {
      * @requires location is within the bounds (row/columns) of the spreadsheet.
      */
     public ViewElement formulaAt(int row, int column) {
-        for (Map.Entry<CellLocation, Expression> eachCell : expressionAtLocation.entrySet()) {
-            if (row == eachCell.getKey().getRow() && column == eachCell.getKey().getColumn()) {
-                return new ViewElement(formulaAt(eachCell.getKey()).render(),
-                        "white", "black");
-            }
-        }
-        return new ViewElement(this.defaultExpression.render(), "white", "black");
+        return new ViewElement(formulaAt(CellLocation.of(row, column)).render(),
+                "white", "black");
     }
 
     /**
@@ -134,27 +224,52 @@ public class Sheet implements SheetView, SheetUpdate {
     public UpdateResponse update(int row, int column, String input) {
         try {
             Expression parsed = this.parser.parse(input);
-            for (Map.Entry<CellLocation, Expression> eachCell : expressionAtLocation.entrySet()) {
-                builtIns.put(eachCell.getKey().toString(), eachCell.getValue());
-            }
-            update(new CellLocation(row, column), parsed);
+            update(CellLocation.of(row, column), parsed);
         } catch (ParseException e) {
             return UpdateResponse.fail(String.format("Unable to parse: [%s]", input));
         } catch (TypeError e) {
-            return UpdateResponse.fail(String.format("Type error: [%s]", e));
+            return UpdateResponse.fail(String.format("Type error: [%s]", e.getMessage()));
         }
         return UpdateResponse.success();
     }
 
     /**
      * The formula expression currently stored at the location in the spreadsheet.
+     * Stored formulas refer to cells relative to the cell holding them, so a formula with
+     * relative references is rewritten into a new expression, with references to cells by
+     * name, on every call. This is intended for display and editing rather than evaluation.
      *
      * @param location A cell location within the spreadsheet.
      * @return The formula expression at the given cell location.
      * @requires location is within the bounds (row/columns) of the spreadsheet.
      */
     public Expression formulaAt(CellLocation location) {
-        return expressionAtLocation.get(location);
+        Expression formula = storage.formulaAt(location.getRow(), location.getColumn());
+        if (formula == null) {
+            return this.defaultExpression;
+        }
+        return absolute(formula, location.getRow(), location.getColumn());
+    }
+
+    /**
+     * The expression stored for a cell, in which references to cells are relative to the cell.
+     * Cells holding formulas of the same shape share the same expression.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @return The stored expression, or null if the cell is empty.
+     */
+    Expression storedFormulaAt(int row, int column) {
+        return storage.formulaAt(row, column);
+    }
+
+    /**
+     * The cells of the sheet that hold a formula.
+     *
+     * @return A new list of the locations of every non-empty cell, in no particular order.
+     */
+    List<CellLocation> filledCells() {
+        return storage.filled();
     }
 
     /**
@@ -165,7 +280,81 @@ public class Sheet implements SheetView, SheetUpdate {
      * @requires location is within the bounds (row/columns) of the spreadsheet.
      */
     public Expression valueAt(CellLocation location) {
-        return expressionAtLocation.get(location);
+        return displayedValue(location.getRow(), location.getColumn());
+    }
+
+    /**
+     * The value of a cell, served from the cell's cache where it is up to date.
+     * Cells whose formula cannot be evaluated hold an error value, such as "#VALUE!". A cell
+     * that has no value, as it was read while being calculated, shows its formula instead.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @return The value of the cell, its formula, or the default expression if it is empty.
+     */
+    private Expression displayedValue(int row, int column) {
+        Expression value = cachedValue(row, column);
+        if (value == null) {
+            return formulaAt(CellLocation.of(row, column));
+        }
+        return value;
+    }
+
+    /**
+     * Whether a cell holds a formula whose cached value is missing or out of date.
+     * Empty cells are never stale, as they have no value to calculate.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @return True if the cell needs to be calculated.
+     */
+    private boolean isStale(int row, int column) {
+        return storage.stateAt(row, column) == STALE && storage.formulaAt(row, column) != null;
+    }
+
+    /**
+     * The cached value of a cell, calculating it first if it is out of date.
+     * A cell that is read while its own value is still being calculated has no value, so a
+     * cyclic reference cannot recurse forever.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @return The value of the cell, or null if it is empty or is being calculated.
+     */
+    Expression cachedValue(int row, int column) {
+        if (storage.stateAt(row, column) == CALCULATING) {
+            return null;
+        }
+        if (isStale(row, column)) {
+            calculate(CellLocation.of(row, column));
+        }
+        return storage.valueAt(row, column);
+    }
+
+    /**
+     * The numeric value of a cell, calculating it first if it is out of date.
+     * Cells without a numeric value, including a cell read while its own value is still being
+     * calculated, record an error in the context instead.
+     *
+     * @param context The context of the evaluation reading the cell.
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @return The numeric value of the cell, or 0 if an error was recorded.
+     */
+    long numberAt(EvalContext context, int row, int column) {
+        if (storage.stateAt(row, column) == CALCULATING) {
+            return context.fail(ErrorValue.VALUE);
+        }
+        if (isStale(row, column)) {
+            calculate(CellLocation.of(row, column));
+        }
+        if (storage.isNumeric(row, column)) {
+            return storage.numberAt(row, column);
+        }
+        if (storage.valueAt(row, column) instanceof ErrorValue error) {
+            return context.fail(error);
+        }
+        return context.fail(ErrorValue.VALUE);
     }
 
     /**
@@ -176,34 +365,581 @@ public class Sheet implements SheetView, SheetUpdate {
      * @requires location is within the bounds (row/columns) of the spreadsheet.
      */
     public Set<CellLocation> usedBy(CellLocation location) {
-        for (CellLocation dependentLocation : expressionAtLocation.keySet()) {
-            for (String cell : formulaAt(dependentLocation).dependencies()) {
-                if (Objects.equals(cell, location.toString())) {
-                    usedCell.add(dependentLocation);
-                    usedBy(dependentLocation);
-                }
+        return graph.transitiveDependentsOf(location);
+    }
+
+    /**
+     * Determine the cells within this sheet that an expression refers to.
+     * Identifiers that are not cell references, or that refer to cells outside the bounds of the
+     * sheet, are ignored.
+     *
+     * @param expression An expression that may be inserted into the sheet.
+     * @return The set of cell locations that the expression depends upon.
+     */
+    private Set<CellLocation> referencesOf(Expression expression) {
+        Set<CellLocation> references = new HashSet<>();
+        for (String identifier : expression.dependencies()) {
+            long key = CellLocation.parseKey(identifier);
+            if (key != CellLocation.NOT_A_REFERENCE && CellLocation.rowOf(key) < this.rows
+                    && CellLocation.columnOf(key) < this.columns) {
+                references.add(CellLocation.of(key));
             }
         }
-        return usedCell;
+        return references;
     }
 
     /**
      * Insert an expression into a cell location, updating the sheet as required.
+     * The formula is stored separately from its value, and every cell that depends on the
+     * location, directly or transitively, is re-evaluated exactly once in topological order.
+     * If the expression would refer back to the location, directly or through other cells, the
+     * update is rejected and the sheet is left unchanged.
      *
      * @param location A cell location to insert the expression into the sheet.
      * @param cell An expression to insert at the given location.
-     * @throws TypeError If the evaluation of the inserted cell or any of its usages results in a
-     *                  TypeError being thrown.
+     * @throws TypeError If the expression would create a cyclic reference.
      * @requires location is within the bounds (row/columns) of the spreadsheet.
      */
     public void update(CellLocation location, Expression cell) throws TypeError {
-        for (Map.Entry<CellLocation, Expression> eachCell : expressionAtLocation.entrySet()) {
-            builtIns.put(eachCell.getKey().toString(), eachCell.getValue());
+        apply(location, cell);
+        commit(List.of(location));
+    }
+
+    /**
+     * Attempt to update many cells at once.
+     * Every input is parsed before any cell is changed, and the edits are then applied in order.
+     * If any input cannot be parsed, or any edit would create a cyclic reference, none of the
+     * edits are applied. Otherwise, the affected cells are recalculated once, after all of the
+     * edits have been applied.
+     *
+     * @param edits The edits to apply, in order.
+     * @return Information about the status of each edit, in the same order as the edits.
+     */
+    @Override
+    public List<UpdateResponse> updateAll(Collection<CellEdit> edits) {
+        List<UpdateResponse> responses = new ArrayList<>(edits.size());
+        List<Expression> parsed = new ArrayList<>(edits.size());
+        boolean failed = false;
+        for (CellEdit edit : edits) {
+            try {
+                parsed.add(this.parser.parse(edit.getInput()));
+                responses.add(UpdateResponse.success());
+            } catch (ParseException e) {
+                parsed.add(null);
+                responses.add(UpdateResponse.fail(
+                        String.format("Unable to parse: [%s]", edit.getInput())));
+                failed = true;
+            }
+        }
+
+        Map<CellLocation, Expression> oldFormulas = new HashMap<>();
+        Map<CellLocation, Set<CellLocation>> oldReferences = new HashMap<>();
+        int index = 0;
+        for (CellEdit edit : edits) {
+            if (failed) {
+                break;
+            }
+            CellLocation location = CellLocation.of(edit.getRow(), edit.getColumn());
+            if (!oldReferences.containsKey(location)) {
+                oldFormulas.put(location, storage.formulaAt(edit.getRow(), edit.getColumn()));
+                oldReferences.put(location, new HashSet<>(graph.precedentsOf(location)));
+            }
+            try {
+                apply(location, parsed.get(index));
+            } catch (TypeError e) {
+                responses.set(index, UpdateResponse.fail(
+                        String.format("Type error: [%s]", e.getMessage())));
+                failed = true;
+            }
+            index++;
+        }
+
+        if (failed) {
+            for (Map.Entry<CellLocation, Set<CellLocation>> old : oldReferences.entrySet()) {
+                CellLocation location = old.getKey();
+                setFormula(location.getRow(), location.getColumn(),
+                        oldFormulas.get(location));
+                graph.replace(location, old.getValue());
+            }
+            // Restoring a formula into a freed tile loses its value, which must not be left
+            // for a later parallel recalculation to find.
+            for (CellLocation location : oldReferences.keySet()) {
+                if (isStale(location.getRow(), location.getColumn())) {
+                    calculate(location);
+                }
+            }
+            for (int i = 0; i < responses.size(); i++) {
+                if (responses.get(i).isSuccess()) {
+                    responses.set(i, UpdateResponse.fail(
+                            "Not applied, another update in the batch failed."));
+                }
+            }
+            return responses;
+        }
+        commit(oldReferences.keySet());
+        return responses;
+    }
+
+    /**
+     * Parse the input of a cell with the parser of this sheet.
+     *
+     * @param input The input of a cell.
+     * @return The parsed formula.
+     * @throws ParseException If the input is not recognisable as an expression.
+     */
+    Expression parse(String input) throws ParseException {
+        return this.parser.parse(input);
+    }
+
+    /**
+     * Store a number in a cell as both its formula and its value, without recalculating the
+     * cells that depend on it.
+     * The value is marked as up to date.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @param number The number to store.
+     * @return True if other cells depend on the cell and so need to be recalculated.
+     * @requires row and column are within the bounds of the spreadsheet.
+     */
+    boolean load(int row, int column, long number) {
+        CellLocation location = CellLocation.of(row, column);
+        Constant constant = new Constant(number);
+        setFormula(row, column, constant);
+        graph.replace(location, Set.of());
+        store(location, constant);
+        return !graph.dependentsOf(location).isEmpty();
+    }
+
+    /**
+     * Store a formula in a cell without recalculating it or the cells that depend on it.
+     * The cell must be passed to commitLoad(Collection) once loading is finished, so that it is
+     * recalculated together with the rest of the load. A formula cell is never left out of date
+     * outside of a recalculation, as a parallel recalculation must not find a cell to calculate
+     * outside of the cells it is recalculating.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @param cell The formula to store.
+     * @return True, as the cell itself needs to be recalculated.
+     * @throws TypeError If the formula would create a cyclic reference.
+     * @requires row and column are within the bounds of the spreadsheet.
+     */
+    boolean load(int row, int column, Expression cell) throws TypeError {
+        apply(CellLocation.of(row, column), cell);
+        storage.setState(row, column, STALE);
+        return true;
+    }
+
+    /**
+     * Recalculate every loaded cell that needs it, together with every cell affected by them.
+     *
+     * @param loaded The loaded formula cells, and the loaded number cells that other cells
+     *               depend on.
+     */
+    void commitLoad(Collection<CellLocation> loaded) {
+        commit(loaded);
+    }
+
+    /**
+     * Store a new formula in a cell and update the dependency graph, without recalculating.
+     *
+     * @param location The location of the cell to update.
+     * @param cell The new formula of the cell.
+     * @throws TypeError If the formula would create a cyclic reference.
+     */
+    private void apply(CellLocation location, Expression cell) throws TypeError {
+        Set<CellLocation> references = referencesOf(cell);
+        if (graph.wouldCycle(location, references)) {
+            throw new TypeError(String.format("Cyclic reference to %s", location));
+        }
+        setFormula(location.getRow(), location.getColumn(), template(location, cell));
+        graph.replace(location, references);
+    }
+
+    /**
+     * Store a formula in a cell, keeping count of the cells holding tiered up formulas.
+     * An empty formula empties the cell, so that clearing a cell stores nothing for it.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @param formula The new formula of the cell, or null to empty the cell.
+     */
+    private void setFormula(int row, int column, Expression formula) {
+        if (formula instanceof Nothing) {
+            formula = null;
+        }
+        if (storage.formulaAt(row, column) instanceof CompiledFormula old) {
+            compiledCells.addAndGet(old.hold(-1));
+        }
+        if (formula instanceof CompiledFormula compiled) {
+            compiledCells.addAndGet(compiled.hold(1));
+        }
+        storage.setFormula(row, column, formula);
+    }
+
+    /**
+     * Convert a formula so that its references to cells within the sheet are relative to the
+     * cell holding it, and share the result with other cells holding a formula of the same
+     * shape. References are only converted if they are written in the same form that the
+     * referenced cell location is rendered in, so that the formula can be rendered unchanged.
+     * References to built-ins are bound to their slot in the sheet's symbol table.
+     * Every node of the converted formula is interned, so formulas of different shapes also
+     * share the sub-formulas they have in common.
+     *
+     * @param location The location of the cell holding the formula.
+     * @param cell The formula, with references to cells by name.
+     * @return The formula itself if it has no references to cells or built-ins, otherwise the
+     * shared formula with relative and bound references, compiled if the sheet is compiling
+     * formulas.
+     */
+    private Expression template(CellLocation location, Expression cell) {
+        Expression template = cell.rewrite(reference -> {
+            long key = CellLocation.parseKey(reference.getIdentifier());
+            if (key == CellLocation.NOT_A_REFERENCE || CellLocation.rowOf(key) >= this.rows
+                    || CellLocation.columnOf(key) >= this.columns
+                    || !CellLocation.of(key).toString().equals(reference.getIdentifier())) {
+                return bind(reference);
+            }
+            return new Reference(CellLocation.rowOf(key) - location.getRow(),
+                    CellLocation.columnOf(key) - location.getColumn());
+        }, templates);
+        if (this.compiling) {
+            return compiled(template);
+        }
+        return template;
+    }
+
+    /**
+     * The compiled form of a shared formula, compiling it only if no cell holding a formula of
+     * the same shape has been compiled before.
+     *
+     * @param shared A formula shared between the cells holding it.
+     * @return The compiled formula, or the formula itself if it cannot be compiled.
+     */
+    private Expression compiled(Expression shared) {
+        WeakReference<Expression> cached = compiledTemplates.get(shared);
+        Expression compiled = cached == null ? null : cached.get();
+        if (compiled == null) {
+            compiled = CompiledFormula.compile(shared);
+            if (compiled == null) {
+                compiled = shared;
+            }
+            compiledTemplates.put(shared, new WeakReference<>(compiled));
+        }
+        return compiled;
+    }
+
+    /**
+     * Bind a reference to the slot of the built-in it refers to.
+     *
+     * @param reference A reference that is not to a cell within the sheet.
+     * @return A bound reference to the built-in, or the reference itself if it is already bound
+     * or there is no built-in with its identifier.
+     */
+    private Reference bind(Reference reference) {
+        if (reference.getSlot() != Reference.UNBOUND || reference.isRelative()) {
+            return reference;
+        }
+        int slot = this.symbols.slotOf(reference.getIdentifier());
+        if (slot == Reference.UNBOUND) {
+            return reference;
+        }
+        return new Reference(reference.getIdentifier(), slot);
+    }
+
+    /**
+     * Convert the relative references within an expression back to references to cells by
+     * name, as seen from the given cell.
+     *
+     * @param expression An expression that may contain relative references.
+     * @param row The row index of the cell the references are relative to.
+     * @param column The column index of the cell the references are relative to.
+     * @return The expression itself if it has no relative references, otherwise a copy with
+     * the references converted.
+     */
+    private static Expression absolute(Expression expression, int row, int column) {
+        return expression.rewrite(reference -> {
+            if (!reference.isRelative()) {
+                return reference;
+            }
+            return new Reference(CellLocation.of(row + reference.getRowOffset(),
+                    column + reference.getColumnOffset()).toString());
+        });
+    }
+
+    /**
+     * Mark every cell affected by a set of edits as out of date, and recalculate them.
+     *
+     * @param edited The cells whose formulas have been changed.
+     */
+    private void commit(Collection<CellLocation> edited) {
+        Set<CellLocation> dirty = graph.affectedBy(edited);
+        for (CellLocation each : dirty) {
+            if (storage.formulaAt(each.getRow(), each.getColumn()) == null) {
+                store(each, null);
+            } else {
+                storage.setState(each.getRow(), each.getColumn(), STALE);
+            }
+        }
+        recalculate(dirty);
+    }
+
+    /**
+     * Recalculate large sets of cells in parallel.
+     * When at least threshold cells need to be recalculated after an update, they are split into
+     * topological levels and the cells of each level that is at least threshold in size are
+     * evaluated across the given pool. Smaller recalculations stay on the calling thread.
+     *
+     * @param pool The pool to evaluate cells on, or null to disable parallel recalculation.
+     * @param threshold The least amount of cells worth recalculating in parallel.
+     * @requires threshold > 0.
+     */
+    public void setParallelRecalculation(ForkJoinPool pool, int threshold) {
+        this.pool = pool;
+        this.parallelThreshold = threshold;
+    }
+
+    /**
+     * Compile formulas to compact postfix programs that are run by a stack machine, rather than
+     * evaluating their expression trees. Only formulas stored after the call are affected.
+     *
+     * @param compiling Whether formulas stored from now on are compiled.
+     */
+    public void setCompiling(boolean compiling) {
+        this.compiling = compiling;
+    }
+
+    /**
+     * Compile hot formulas further, to chains of method handles that the JIT compiler can
+     * inline. Once a compiled formula has been evaluated threshold times, counted across every
+     * cell sharing it, it is tiered up. Only affects formulas compiled by setCompiling(boolean).
+     *
+     * @param threshold The amount of evaluations before a formula is tiered up, or 0 to never
+     *                  tier formulas up.
+     * @requires threshold >= 0.
+     */
+    public void setTierUpThreshold(int threshold) {
+        this.tierUpThreshold = threshold;
+    }
+
+    /**
+     * The amount of evaluations after which a compiled formula is tiered up.
+     *
+     * @return The tier-up threshold, or 0 if formulas are never tiered up.
+     */
+    public int getTierUpThreshold() {
+        return this.tierUpThreshold;
+    }
+
+    /**
+     * The amount of cells whose formula has been tiered up to a method handle.
+     *
+     * @return The amount of cells evaluated through a method handle.
+     */
+    public int getCompiledCells() {
+        return compiledCells.get();
+    }
+
+    /**
+     * Record that a formula has been tiered up to a method handle.
+     *
+     * @param holders The amount of cells holding the formula.
+     */
+    void tieredUp(int holders) {
+        compiledCells.addAndGet(holders);
+    }
+
+    /**
+     * Re-evaluate a set of cells so that each is calculated once, after all of its precedents.
+     *
+     * @param dirty The cells whose values may be out of date.
+     */
+    private void recalculate(Set<CellLocation> dirty) {
+        if (this.pool == null || dirty.size() < this.parallelThreshold) {
+            for (CellLocation location : graph.topologicalOrder(dirty)) {
+                if (isStale(location.getRow(), location.getColumn())) {
+                    calculate(location);
+                }
+            }
+            return;
+        }
+        for (List<CellLocation> level : graph.topologicalLevels(dirty)) {
+            if (level.size() < this.parallelThreshold) {
+                for (CellLocation location : level) {
+                    if (isStale(location.getRow(), location.getColumn())) {
+                        calculate(location);
+                    }
+                }
+            } else {
+                Expression[] results = new Expression[level.size()];
+                this.pool.invoke(new LevelTask(this, level, results, 0, level.size()));
+                for (int i = 0; i < results.length; i++) {
+                    store(level.get(i), results[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluate the formula at a location against the current values of the sheet.
+     * This does not modify the sheet, so may be called for many cells at once.
+     * Formulas are first evaluated to a primitive number, which for numeric formulas allocates
+     * nothing but the resulting constant. An arithmetic formula that fails evaluates to the
+     * error recorded, as evaluating it by value would fail with the same error. Any other
+     * formula that fails, such as a lone reference to an empty cell or a formula that is not a
+     * core expression, is evaluated again by value so that it keeps its rendering.
+     * Core expressions report failures as error values rather than by throwing. A formula that
+     * throws a type error regardless also evaluates to ErrorValue.VALUE.
+     *
+     * @param location The location of the cell to evaluate.
+     * @return The value of the cell, which may be an error value, or null if the cell is empty.
+     */
+    private Expression evaluate(CellLocation location) {
+        int row = location.getRow();
+        int column = location.getColumn();
+        Expression formula = storage.formulaAt(row, column);
+        if (formula == null) {
+            return null;
+        }
+        CellContext context = new CellContext(this, state, row, column);
+        long number = formula.evalLong(context);
+        if (!context.failed()) {
+            return new Constant(number);
+        }
+        if (formula instanceof CompiledFormula || formula.simplified() instanceof Arithmetic) {
+            return context.error();
         }
         try {
-            expressionAtLocation.put(location, cell.value(builtIns));
+            Expression value = formula.value(state.at(row, column));
+            if (value.isReference()) {
+                return absolute(value, row, column);
+            }
+            return value;
         } catch (TypeError e) {
-            expressionAtLocation.put(location, cell);
+            return ErrorValue.VALUE;
+        }
+    }
+
+    /**
+     * Calculate the value of a cell and cache it, first calculating any of its precedents that
+     * are out of date.
+     * Precedents are visited in post-order using an explicit stack rather than the call stack,
+     * so that evaluating a formula never has to calculate another cell, and the length of a
+     * chain of references is limited only by memory.
+     *
+     * @param location The location of the cell.
+     */
+    private void calculate(CellLocation location) {
+        Deque<CellLocation> cells = new ArrayDeque<>();
+        Deque<Iterator<CellLocation>> remaining = new ArrayDeque<>();
+        storage.setState(location.getRow(), location.getColumn(), CALCULATING);
+        cells.push(location);
+        remaining.push(graph.precedentsOf(location).iterator());
+        while (!cells.isEmpty()) {
+            Iterator<CellLocation> precedents = remaining.peek();
+            if (precedents.hasNext()) {
+                CellLocation precedent = precedents.next();
+                if (isStale(precedent.getRow(), precedent.getColumn())) {
+                    storage.setState(precedent.getRow(), precedent.getColumn(), CALCULATING);
+                    cells.push(precedent);
+                    remaining.push(graph.precedentsOf(precedent).iterator());
+                }
+            } else {
+                remaining.pop();
+                CellLocation cell = cells.pop();
+                store(cell, evaluate(cell));
+            }
+        }
+    }
+
+    /**
+     * Cache the calculated value of a cell, marking it as up to date.
+     * An empty cell has its value cleared and is left stale instead, which stores nothing for
+     * it.
+     *
+     * @param location The location of the cell.
+     * @param value The newly calculated value of the cell, or null if the cell is empty.
+     */
+    private void store(CellLocation location, Expression value) {
+        storage.setValue(location.getRow(), location.getColumn(), value);
+        storage.setState(location.getRow(), location.getColumn(),
+                value == null ? STALE : VALID);
+    }
+
+    /**
+     * Evaluates a range of the cells within one topological level, splitting the range in half
+     * until it is small enough to evaluate directly.
+     */
+    private static class LevelTask extends RecursiveAction {
+
+        /**
+         * Serialisation version, as required of serializable classes.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Ranges at or below this size are evaluated without being split further.
+         */
+        private static final int GRAIN = 64;
+
+        /**
+         * The sheet whose cells are evaluated.
+         */
+        private final transient Sheet sheet;
+
+        /**
+         * The cells of the level being evaluated.
+         */
+        private final transient List<CellLocation> level;
+
+        /**
+         * Where the value of each cell of the level is written.
+         */
+        private final transient Expression[] results;
+
+        /**
+         * The first index of the range, inclusive.
+         */
+        private final int from;
+
+        /**
+         * The last index of the range, exclusive.
+         */
+        private final int to;
+
+        /**
+         * Constructor.
+         *
+         * @param sheet The sheet whose cells are evaluated.
+         * @param level The cells of the level being evaluated.
+         * @param results Where the value of each cell of the level is written.
+         * @param from The first index of the range, inclusive.
+         * @param to The last index of the range, exclusive.
+         */
+        LevelTask(Sheet sheet, List<CellLocation> level, Expression[] results, int from,
+                  int to) {
+            this.sheet = sheet;
+            this.level = level;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Evaluate the range, forking halves of it while it is larger than the grain.
+         */
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= GRAIN) {
+                for (int i = this.from; i < this.to; i++) {
+                    this.results[i] = this.sheet.evaluate(this.level.get(i));
+                }
+                return;
+            }
+            int middle = (this.from + this.to) >>> 1;
+            invokeAll(new LevelTask(this.sheet, this.level, this.results, this.from, middle),
+                    new LevelTask(this.sheet, this.level, this.results, middle, this.to));
         }
     }
-}
\ No newline at end of file
+}
@@ -22,7 +22,13 @@ public class SheetBuilder {
     private final Expression defaultExpression;
 
     /**
-     * Maps Expression to the identifier.
+     * The most cells a sheet constructed by empty(int, int) will hold in dense storage.
+     * Larger sheets are stored sparsely.
+     */
+    private static final long DENSE_LIMIT = 1 << 24;
+
+    /**
+     * Maps Expression to the identifier, frozen into a symbol table for each sheet constructed.
      */
     private final Map<String, Expression> identifierExpression = new HashMap<>();
 
@@ -43,12 +49,12 @@ public class SheetBuilder {
      * @param identifier A string identifier to be used in the constructed sheet.
      * @param expression The value that the identifier should resolve to within the constructed
      *                  sheet.
-     * @return SheetBuilder.
+     * @return This builder, so that calls may be chained.
      * @requires identifier cannot be a valid cell location reference, e.g. A1.
      */
     public SheetBuilder includeBuiltIn(String identifier, Expression expression) {
         identifierExpression.put(identifier, expression);
-        return new SheetBuilder(this.parser, defaultExpression);
+        return this;
     }
 
     /**
@@ -61,7 +67,25 @@ public class SheetBuilder {
      * @return A new sheet with the appropriate built-ins and of the specified dimensions.
      */
     public Sheet empty(int rows, int columns) {
-        return new Sheet(this.parser, identifierExpression,
+        if ((long) rows * columns > DENSE_LIMIT) {
+            return sparse(rows, columns);
+        }
+        return new Sheet(this.parser, new SymbolTable(identifierExpression),
                 defaultExpression, rows, columns);
     }
+
+    /**
+     * Constructs a new empty sheet with the given number of rows and columns, suited to very
+     * large grids in which few cells are filled.
+     * Cells are stored in tiles that are only allocated once a cell within them is written to,
+     * so memory use grows with the filled area of the sheet rather than its dimensions.
+     *
+     * @param rows - Amount of rows for the new sheet.
+     * @param columns - Amount of columns for the sheet.
+     * @return A new sheet with the appropriate built-ins and of the specified dimensions.
+     */
+    public Sheet sparse(int rows, int columns) {
+        return new Sheet(this.parser, new SymbolTable(identifierExpression),
+                defaultExpression, rows, columns, new TiledStorage(rows, columns));
+    }
 }
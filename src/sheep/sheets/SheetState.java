@@ -0,0 +1,228 @@
+package sheep.sheets;
+
+import sheep.expression.Expression;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The state that expressions within a sheet are evaluated against.
+ * Identifiers are resolved on demand, first against the values held in the sheet's cells and
+ * then against the sheet's built-ins, so nothing needs to be copied before an evaluation.
+ * Relative references, in R1C1 notation such as "R[-1]C[0]", are resolved from the cell whose
+ * formula is being evaluated, see at(int, int).
+ * This is a read-only view. Lookups by identifier are resolved directly, while enumerating the
+ * state, including size(), builds a snapshot of the built-ins and of every non-empty cell.
+ */
+class SheetState extends AbstractMap<String, Expression> {
+
+    /**
+     * Returned by parseOffset(String, int, int) for text that is not an offset.
+     */
+    private static final long NOT_AN_OFFSET = Long.MIN_VALUE;
+
+    /**
+     * The largest magnitude of an offset between two cells.
+     */
+    private static final long MAX_OFFSET = Integer.MAX_VALUE;
+
+    /**
+     * The sheet whose cells are resolved.
+     */
+    private final Sheet sheet;
+
+    /**
+     * The frozen built-ins of the sheet.
+     */
+    private final SymbolTable builtIns;
+
+    /**
+     * The row of the cell that relative references are resolved from.
+     */
+    private final int hostRow;
+
+    /**
+     * The column of the cell that relative references are resolved from.
+     */
+    private final int hostColumn;
+
+    /**
+     * Constructor.
+     *
+     * @param sheet The sheet whose cells are resolved.
+     * @param builtIns The frozen built-ins of the sheet.
+     */
+    SheetState(Sheet sheet, SymbolTable builtIns) {
+        this(sheet, builtIns, 0, 0);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param sheet The sheet whose cells are resolved.
+     * @param builtIns The frozen built-ins of the sheet.
+     * @param hostRow The row of the cell that relative references are resolved from.
+     * @param hostColumn The column of the cell that relative references are resolved from.
+     */
+    private SheetState(Sheet sheet, SymbolTable builtIns,
+                       int hostRow, int hostColumn) {
+        this.sheet = sheet;
+        this.builtIns = builtIns;
+        this.hostRow = hostRow;
+        this.hostColumn = hostColumn;
+    }
+
+    /**
+     * The state to evaluate the formula of a cell against, resolving relative references from
+     * that cell.
+     *
+     * @param row The row of the cell being evaluated.
+     * @param column The column of the cell being evaluated.
+     * @return A view of the same sheet and built-ins.
+     */
+    SheetState at(int row, int column) {
+        return new SheetState(this.sheet, this.builtIns, row, column);
+    }
+
+    /**
+     * Resolve an identifier to the value of the cell it refers to, or to a built-in.
+     * Cells are resolved through the sheet's value cache.
+     *
+     * @param key The identifier to resolve.
+     * @return The value of the identifier, or null if it does not resolve to anything.
+     */
+    @Override
+    public Expression get(Object key) {
+        if (!(key instanceof String identifier)) {
+            return null;
+        }
+        long location = CellLocation.parseKey(identifier);
+        if (location == CellLocation.NOT_A_REFERENCE) {
+            location = parseRelative(identifier);
+        }
+        if (location != CellLocation.NOT_A_REFERENCE) {
+            int row = CellLocation.rowOf(location);
+            int column = CellLocation.columnOf(location);
+            if (row < this.sheet.getRows() && column < this.sheet.getColumns()) {
+                return this.sheet.cachedValue(row, column);
+            }
+        }
+        return this.builtIns.get(identifier);
+    }
+
+    /**
+     * Resolve an identifier as a built-in only.
+     *
+     * @param identifier The identifier to resolve.
+     * @return The built-in expression, or null if there is no such built-in.
+     */
+    Expression builtIn(String identifier) {
+        return this.builtIns.get(identifier);
+    }
+
+    /**
+     * Resolve a reference that has been bound to a slot of the sheet's built-ins.
+     *
+     * @param slot The slot the reference has been bound to.
+     * @return The built-in expression held in the slot.
+     */
+    Expression builtIn(int slot) {
+        return this.builtIns.valueAt(slot);
+    }
+
+    /**
+     * Attempt to parse an identifier as a relative reference in R1C1 notation, resolving it from
+     * the host cell. The offsets are read in place, without allocating.
+     *
+     * @param identifier An identifier that may be a relative reference, e.g. "R[-1]C[0]".
+     * @return The packed key of the referenced location, or NOT_A_REFERENCE if the identifier is
+     * not a relative reference or refers to a cell before the first row or column.
+     */
+    private long parseRelative(String identifier) {
+        int length = identifier.length();
+        if (!identifier.startsWith("R[") || identifier.charAt(length - 1) != ']') {
+            return CellLocation.NOT_A_REFERENCE;
+        }
+        int rowEnd = identifier.indexOf("]C[", 2);
+        if (rowEnd < 0) {
+            return CellLocation.NOT_A_REFERENCE;
+        }
+        long rowOffset = parseOffset(identifier, 2, rowEnd);
+        long columnOffset = parseOffset(identifier, rowEnd + 3, length - 1);
+        if (rowOffset == NOT_AN_OFFSET || columnOffset == NOT_AN_OFFSET) {
+            return CellLocation.NOT_A_REFERENCE;
+        }
+        long row = this.hostRow + rowOffset;
+        long column = this.hostColumn + columnOffset;
+        if (row < 0 || column < 0 || row > Integer.MAX_VALUE || column > Integer.MAX_VALUE) {
+            return CellLocation.NOT_A_REFERENCE;
+        }
+        return CellLocation.pack((int) row, (int) column);
+    }
+
+    /**
+     * Parse an optionally negative decimal offset from part of an identifier, without
+     * allocating.
+     *
+     * @param identifier The identifier containing the offset.
+     * @param from The index of the first character of the offset, inclusive.
+     * @param to The index after the last character of the offset.
+     * @return The offset, or NOT_AN_OFFSET if the characters are not an offset small enough to
+     * refer to a cell.
+     */
+    private static long parseOffset(String identifier, int from, int to) {
+        boolean negative = from < to && identifier.charAt(from) == '-';
+        int index = negative ? from + 1 : from;
+        if (index >= to) {
+            return NOT_AN_OFFSET;
+        }
+        long offset = 0;
+        for (; index < to; index++) {
+            char character = identifier.charAt(index);
+            if (character < '0' || character > '9') {
+                return NOT_AN_OFFSET;
+            }
+            offset = offset * 10 + (character - '0');
+            if (offset > MAX_OFFSET) {
+                return NOT_AN_OFFSET;
+            }
+        }
+        return negative ? -offset : offset;
+    }
+
+    /**
+     * Whether an identifier resolves to a cell value or a built-in.
+     *
+     * @param key The identifier to resolve.
+     * @return True if the identifier resolves to an expression.
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * A snapshot of every built-in and of the value of every non-empty cell, keyed by
+     * identifier. Cells are keyed by their location, e.g. "A1", and calculated first if their
+     * value is out of date. A cell that is being calculated has no value and is left out.
+     *
+     * @return An unmodifiable set of the entries of the state.
+     */
+    @Override
+    public Set<Entry<String, Expression>> entrySet() {
+        Map<String, Expression> entries = new LinkedHashMap<>();
+        for (int slot = 0; slot < this.builtIns.size(); slot++) {
+            entries.put(this.builtIns.identifierAt(slot), this.builtIns.valueAt(slot));
+        }
+        for (CellLocation cell : this.sheet.filledCells()) {
+            Expression value = this.sheet.cachedValue(cell.getRow(), cell.getColumn());
+            if (value != null) {
+                entries.put(cell.toString(), value);
+            }
+        }
+        return Collections.unmodifiableMap(entries).entrySet();
+    }
+}
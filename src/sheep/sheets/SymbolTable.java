@@ -0,0 +1,101 @@
+package sheep.sheets;
+
+import sheep.expression.Expression;
+import sheep.expression.basic.Reference;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A frozen table of the built-ins of a sheet, each held in a numbered slot.
+ * References to built-ins are bound to their slot when a formula enters the sheet, so that
+ * evaluating them reads an array by index rather than hashing their identifier.
+ */
+class SymbolTable {
+
+    /**
+     * Maps the identifier of each built-in to its slot, only used when binding.
+     */
+    private final Map<String, Integer> slots;
+
+    /**
+     * The expression of each built-in, indexed by slot.
+     */
+    private final Expression[] values;
+
+    /**
+     * The identifier of each built-in, indexed by slot.
+     */
+    private final String[] identifiers;
+
+    /**
+     * Construct a table holding a copy of the given built-ins. Later changes to the mapping do
+     * not affect the table.
+     *
+     * @param builtIns A mapping of built-in identifiers to expressions.
+     */
+    SymbolTable(Map<String, Expression> builtIns) {
+        Map<String, Integer> slots = new HashMap<>();
+        this.values = new Expression[builtIns.size()];
+        this.identifiers = new String[builtIns.size()];
+        for (Map.Entry<String, Expression> entry : builtIns.entrySet()) {
+            this.values[slots.size()] = entry.getValue();
+            this.identifiers[slots.size()] = entry.getKey();
+            slots.put(entry.getKey(), slots.size());
+        }
+        this.slots = Map.copyOf(slots);
+    }
+
+    /**
+     * The slot of the built-in with the given identifier.
+     *
+     * @param identifier The identifier of a built-in.
+     * @return The slot of the built-in, or Reference.UNBOUND if there is no such built-in.
+     */
+    int slotOf(String identifier) {
+        Integer slot = this.slots.get(identifier);
+        return slot == null ? Reference.UNBOUND : slot;
+    }
+
+    /**
+     * The built-in held in a slot.
+     *
+     * @param slot The slot of the built-in.
+     * @return The expression of the built-in.
+     * @requires 0 &lt;= slot &lt; size().
+     */
+    Expression valueAt(int slot) {
+        return this.values[slot];
+    }
+
+    /**
+     * The identifier of the built-in held in a slot.
+     *
+     * @param slot The slot of the built-in.
+     * @return The identifier of the built-in.
+     * @requires 0 &lt;= slot &lt; size().
+     */
+    String identifierAt(int slot) {
+        return this.identifiers[slot];
+    }
+
+    /**
+     * The built-in with the given identifier.
+     *
+     * @param identifier The identifier of a built-in.
+     * @return The expression of the built-in, or null if there is no such built-in.
+     */
+    Expression get(String identifier) {
+        Integer slot = this.slots.get(identifier);
+        return slot == null ? null : this.values[slot];
+    }
+
+    /**
+     * The amount of built-ins in the table.
+     *
+     * @return The amount of slots.
+     */
+    int size() {
+        return this.values.length;
+    }
+}
@@ -0,0 +1,371 @@
+package sheep.sheets;
+
+import sheep.expression.Expression;
+import sheep.expression.basic.Constant;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cell storage for very large, sparsely filled grids.
+ * The grid is divided into square tiles which are only allocated once a formula is stored in
+ * one of their cells, and are freed once the last of their formulas is removed, so memory is
+ * proportional to the amount of occupied tiles rather than to the size of the grid. Within a tile, cells are held in flat primitive arrays in the same manner as
+ * {@link DenseStorage}.
+ */
+class TiledStorage implements CellStorage {
+
+    /**
+     * Tiles are 2^TILE_BITS cells wide and high.
+     */
+    private static final int TILE_BITS = 6;
+
+    /**
+     * Amount of rows and columns in a tile.
+     */
+    private static final int TILE_SIZE = 1 << TILE_BITS;
+
+    /**
+     * Mask to find the position of a row or column within its tile.
+     */
+    private static final int TILE_MASK = TILE_SIZE - 1;
+
+    /**
+     * Amount of tiles across the width of the grid.
+     */
+    private final int tileColumns;
+
+    /**
+     * Tiles of the grid, indexed by tile row then tile column.
+     * A row of tiles is only allocated once one of its tiles is, as is each tile.
+     */
+    private final Tile[][] tiles;
+
+    /**
+     * Constructs storage for a grid of the given size.
+     *
+     * @param rows Amount of rows in the grid.
+     * @param columns Amount of columns in the grid.
+     * @requires rows > 0, columns > 0.
+     */
+    TiledStorage(int rows, int columns) {
+        this.tileColumns = (columns + TILE_MASK) >>> TILE_BITS;
+        this.tiles = new Tile[(rows + TILE_MASK) >>> TILE_BITS][];
+    }
+
+    /**
+     * The tile containing a cell, if it has been allocated.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @return The tile containing the cell, or null if it has not been allocated.
+     */
+    private Tile find(int row, int column) {
+        Tile[] tileRow = this.tiles[row >>> TILE_BITS];
+        if (tileRow == null) {
+            return null;
+        }
+        return tileRow[column >>> TILE_BITS];
+    }
+
+    /**
+     * The tile containing a cell, allocating it if required.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @return The tile containing the cell.
+     */
+    private Tile allocate(int row, int column) {
+        Tile[] tileRow = this.tiles[row >>> TILE_BITS];
+        if (tileRow == null) {
+            tileRow = new Tile[this.tileColumns];
+            this.tiles[row >>> TILE_BITS] = tileRow;
+        }
+        Tile tile = tileRow[column >>> TILE_BITS];
+        if (tile == null) {
+            tile = new Tile();
+            tileRow[column >>> TILE_BITS] = tile;
+        }
+        return tile;
+    }
+
+    /**
+     * Free the tile containing a cell, and its row of tiles if no other tile in it is allocated.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     */
+    private void free(int row, int column) {
+        Tile[] tileRow = this.tiles[row >>> TILE_BITS];
+        tileRow[column >>> TILE_BITS] = null;
+        for (Tile tile : tileRow) {
+            if (tile != null) {
+                return;
+            }
+        }
+        this.tiles[row >>> TILE_BITS] = null;
+    }
+
+    /**
+     * The amount of tiles currently allocated.
+     *
+     * @return The amount of allocated tiles.
+     */
+    int allocatedTiles() {
+        int count = 0;
+        for (Tile[] tileRow : this.tiles) {
+            if (tileRow == null) {
+                continue;
+            }
+            for (Tile tile : tileRow) {
+                if (tile != null) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The position of a cell within the arrays of its tile.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @return The index of the cell within its tile.
+     */
+    private static int index(int row, int column) {
+        return ((row & TILE_MASK) << TILE_BITS) | (column & TILE_MASK);
+    }
+
+    /**
+     * The formula stored at the given position.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @return The formula at the position, or null if the cell is empty.
+     */
+    @Override
+    public Expression formulaAt(int row, int column) {
+        Tile tile = find(row, column);
+        if (tile == null) {
+            return null;
+        }
+        return tile.formulas[index(row, column)];
+    }
+
+    /**
+     * Store a formula at the given position.
+     * Emptying a cell in a tile that has not been allocated does not allocate the tile, and
+     * emptying the last cell holding a formula in a tile frees the tile, together with the
+     * values and states of its cells.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @param formula The formula to store, or null to empty the cell.
+     */
+    @Override
+    public void setFormula(int row, int column, Expression formula) {
+        int index = index(row, column);
+        if (formula != null) {
+            Tile tile = allocate(row, column);
+            if (tile.formulas[index] == null) {
+                tile.filled++;
+            }
+            tile.formulas[index] = formula;
+            return;
+        }
+        Tile tile = find(row, column);
+        if (tile == null || tile.formulas[index] == null) {
+            return;
+        }
+        tile.formulas[index] = null;
+        if (--tile.filled == 0) {
+            free(row, column);
+        }
+    }
+
+    /**
+     * The calculated value stored at the given position.
+     * Numeric values are returned as a new constant expression.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @return The value at the position, or null if no value has been calculated.
+     */
+    @Override
+    public Expression valueAt(int row, int column) {
+        Tile tile = find(row, column);
+        if (tile == null) {
+            return null;
+        }
+        int index = index(row, column);
+        if (tile.isNumeric(index)) {
+            return new Constant(tile.numbers[index]);
+        }
+        return tile.others == null ? null : tile.others[index];
+    }
+
+    /**
+     * Store a calculated value at the given position.
+     * Constant values are unboxed into the primitive array of the tile.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @param value The value to store, or null to clear the value.
+     */
+    @Override
+    public void setValue(int row, int column, Expression value) {
+        Tile tile = value == null ? find(row, column) : allocate(row, column);
+        if (tile == null) {
+            return;
+        }
+        int index = index(row, column);
+        if (value instanceof Constant constant) {
+            tile.numbers[index] = constant.getValue();
+            tile.numeric[index >>> 6] |= 1L << index;
+            if (tile.others != null) {
+                tile.others[index] = null;
+            }
+        } else {
+            tile.numeric[index >>> 6] &= ~(1L << index);
+            if (value != null && tile.others == null) {
+                tile.others = new Expression[TILE_SIZE * TILE_SIZE];
+            }
+            if (tile.others != null) {
+                tile.others[index] = value;
+            }
+        }
+    }
+
+    /**
+     * Whether the value at the given position is numeric.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @return True if the cell holds a numeric value.
+     */
+    @Override
+    public boolean isNumeric(int row, int column) {
+        Tile tile = find(row, column);
+        return tile != null && tile.isNumeric(index(row, column));
+    }
+
+    /**
+     * The numeric value stored at the given position.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @return The numeric value of the cell.
+     * @requires isNumeric(row, column).
+     */
+    @Override
+    public long numberAt(int row, int column) {
+        return find(row, column).numbers[index(row, column)];
+    }
+
+    /**
+     * The calculation state recorded against the value at the given position.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @return The state of the cell, zero if none has been recorded.
+     */
+    @Override
+    public byte stateAt(int row, int column) {
+        Tile tile = find(row, column);
+        if (tile == null) {
+            return 0;
+        }
+        return tile.states[index(row, column)];
+    }
+
+    /**
+     * Record a calculation state against the value at the given position.
+     * Recording a zero state in a tile that has not been allocated does not allocate the tile.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @param state The state to record.
+     */
+    @Override
+    public void setState(int row, int column, byte state) {
+        Tile tile = state == 0 ? find(row, column) : allocate(row, column);
+        if (tile != null) {
+            tile.states[index(row, column)] = state;
+        }
+    }
+
+    /**
+     * The cells that hold a formula, visiting only the tiles that have been allocated.
+     *
+     * @return A new list of the locations of every non-empty cell.
+     */
+    @Override
+    public List<CellLocation> filled() {
+        List<CellLocation> filled = new ArrayList<>();
+        for (int tileRow = 0; tileRow < this.tiles.length; tileRow++) {
+            if (this.tiles[tileRow] == null) {
+                continue;
+            }
+            for (int tileColumn = 0; tileColumn < this.tileColumns; tileColumn++) {
+                Tile tile = this.tiles[tileRow][tileColumn];
+                if (tile == null) {
+                    continue;
+                }
+                for (int index = 0; index < tile.formulas.length; index++) {
+                    if (tile.formulas[index] != null) {
+                        filled.add(CellLocation.of((tileRow << TILE_BITS) + (index >>> TILE_BITS),
+                                (tileColumn << TILE_BITS) + (index & TILE_MASK)));
+                    }
+                }
+            }
+        }
+        return filled;
+    }
+
+    /**
+     * A square block of cells, stored in flat arrays indexed by position within the tile.
+     */
+    private static class Tile {
+
+        /**
+         * The formula of each cell.
+         */
+        private final Expression[] formulas = new Expression[TILE_SIZE * TILE_SIZE];
+
+        /**
+         * The numeric value of each cell, only meaningful where numeric is set.
+         */
+        private final long[] numbers = new long[TILE_SIZE * TILE_SIZE];
+
+        /**
+         * The calculation state recorded against the value of each cell.
+         */
+        private final byte[] states = new byte[TILE_SIZE * TILE_SIZE];
+
+        /**
+         * Bitset of which cells hold a numeric value.
+         */
+        private final long[] numeric = new long[TILE_SIZE * TILE_SIZE / 64];
+
+        /**
+         * Values of cells which are not numeric, allocated when first needed.
+         */
+        private Expression[] others = null;
+
+        /**
+         * Amount of cells within this tile that hold a formula.
+         */
+        private int filled = 0;
+
+        /**
+         * Whether a cell within this tile holds a numeric value.
+         *
+         * @param index The index of the cell within the tile.
+         * @return True if the cell holds a numeric value.
+         */
+        private boolean isNumeric(int index) {
+            return (this.numeric[index >>> 6] & (1L << index)) != 0;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package sheep.ui.textual;
 import sheep.core.UpdateResponse;
 import sheep.core.SheetUpdate;
 import sheep.core.SheetView;
+import sheep.sheets.CellLocation;
 import sheep.ui.UI;
 
 import java.io.PrintStream;
@@ -31,7 +32,7 @@ public class TextUI extends UI {
     private String columnHeaders(int columns) {
         String[] values = new String[columns];
         for (int column = 0; column < columns; column++) {
-            values[column] = String.valueOf(Character.valueOf((char) (column + 65)));
+            values[column] = CellLocation.appendColumn(new StringBuilder(), column).toString();
         }
         return renderRow(-1, values);
     }
@@ -76,18 +77,19 @@ public class TextUI extends UI {
     }
 
     private Optional<Integer> readRow(String input) {
-        try {
-            return Optional.of(Integer.parseInt(input.substring(1)));
-        } catch (NumberFormatException e) {
+        long key = CellLocation.parseKey(input);
+        if (key == CellLocation.NOT_A_REFERENCE) {
             return Optional.empty();
         }
+        return Optional.of(CellLocation.rowOf(key));
     }
 
     private Optional<Integer> readColumn(String input) {
-        if (Character.isAlphabetic(input.charAt(0))) {
-            return Optional.of(input.charAt(0) - 64);
+        long key = CellLocation.parseKey(input);
+        if (key == CellLocation.NOT_A_REFERENCE) {
+            return Optional.empty();
         }
-        return Optional.empty();
+        return Optional.of(CellLocation.columnOf(key) + 1);
     }
 
     private boolean handleAction(String action) {
@@ -0,0 +1,71 @@
+package sheep.expression;
+
+import org.junit.Assert;
+import org.junit.Test;
+import sheep.expression.basic.Constant;
+import sheep.parsing.ParseException;
+import sheep.parsing.Parser;
+import sheep.parsing.SimpleParser;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Test class for core factory.
+ */
+public class CoreFactoryTest {
+
+    private final Parser parser = new SimpleParser(new CoreFactory(true));
+
+    @Test
+    public void testConstantsFolded() throws ParseException, TypeError {
+        Expression expression = parser.parse("60 * 60 * 24 + A1");
+        Assert.assertEquals("60 * 60 * 24 + A1", expression.render());
+        Assert.assertEquals(Set.of("A1"), expression.dependencies());
+        Assert.assertEquals(new Constant(86402),
+                expression.value(Map.of("A1", new Constant(2))));
+        Simplified simplified = (Simplified) expression;
+        Assert.assertEquals("A1 + 86400", simplified.simplified().render());
+    }
+
+    @Test
+    public void testNestedFlattenedAndIdentityRemoved() throws ParseException {
+        Simplified expression = (Simplified) parser.parse("(A1 + 0) + (B1 + 2 * 3) * 1");
+        Assert.assertEquals("(A1 + 0) + (B1 + 2 * 3) * 1", expression.render());
+        Assert.assertEquals("A1 + B1 + 6", expression.simplified().render());
+    }
+
+    @Test
+    public void testAllConstant() throws ParseException {
+        Assert.assertEquals("7", ((Simplified) parser.parse("1 + 2 * 3")).simplified().render());
+        Assert.assertEquals("1", ((Simplified) parser.parse("1 < 2 < 3")).simplified().render());
+    }
+
+    @Test
+    public void testUnchangedWhenNothingToSimplify() throws ParseException {
+        Assert.assertFalse(parser.parse("A1 + B1") instanceof Simplified);
+    }
+
+    @Test
+    public void testDivisionByZeroNotFolded() throws ParseException, TypeError {
+        Expression expression = parser.parse("1 / 0");
+        Assert.assertEquals("#DIV/0!", expression.value(Map.of()).render());
+    }
+
+    @Test
+    public void testHashConsed() throws ParseException {
+        Parser plain = new SimpleParser(new CoreFactory(false, true));
+        Expression first = plain.parse("(A1 + B1) * 2");
+        Expression second = plain.parse("(A1 + B1) * 2");
+        Assert.assertSame(first, second);
+        Assert.assertSame(plain.parse("7"), plain.parse("7"));
+        Assert.assertNotSame(first, plain.parse("(A1 + B1) * 3"));
+    }
+
+    @Test
+    public void testNotHashConsedByDefault() throws ParseException {
+        Parser plain = new SimpleParser(new CoreFactory());
+        Assert.assertEquals(plain.parse("A1 + 2"), plain.parse("A1 + 2"));
+        Assert.assertNotSame(plain.parse("A1 + 2"), plain.parse("A1 + 2"));
+    }
+}
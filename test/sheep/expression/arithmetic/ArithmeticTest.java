@@ -0,0 +1,160 @@
+package sheep.expression.arithmetic;
+
+import org.junit.Assert;
+import org.junit.Test;
+import sheep.expression.EvalContext;
+import sheep.expression.Expression;
+import sheep.expression.TypeError;
+import sheep.expression.basic.Constant;
+import sheep.expression.basic.ErrorValue;
+import sheep.expression.basic.Reference;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Test class for arithmetic.
+ */
+public class ArithmeticTest {
+
+    private final Map<String, Expression> state = new HashMap<>();
+
+    private final EvalContext context = new EvalContext() {
+        @Override
+        public long valueOf(Reference reference) {
+            Expression value = state.get(reference.getIdentifier());
+            if (value == null) {
+                return fail(ErrorValue.VALUE);
+            }
+            return value.evalLong(this);
+        }
+
+        @Override
+        public Map<String, Expression> state() {
+            return state;
+        }
+    };
+
+    private static Expression[] args(Expression... arguments) {
+        return arguments;
+    }
+
+    @Test
+    public void testEvalLongMatchesValue() throws TypeError {
+        state.put("x", new Constant(6));
+        Expression[] expressions = {
+            Arithmetic.plus(args(new Reference("x"), new Constant(2), new Constant(3))),
+            Arithmetic.minus(args(new Reference("x"), new Constant(2), new Constant(3))),
+            Arithmetic.times(args(new Reference("x"), new Constant(2))),
+            Arithmetic.divide(args(new Reference("x"), new Constant(4))),
+            Arithmetic.less(args(new Constant(1), new Reference("x"), new Constant(7))),
+            Arithmetic.equal(args(new Reference("x"), new Constant(6), new Constant(7))),
+        };
+        for (Expression expression : expressions) {
+            context.reset();
+            long number = expression.evalLong(context);
+            Assert.assertFalse(context.failed());
+            Assert.assertEquals(expression.value(state), new Constant(number));
+        }
+    }
+
+    @Test
+    public void testMissingReference() throws TypeError {
+        Expression expression = Arithmetic.plus(args(new Constant(1), new Reference("y")));
+        expression.evalLong(context);
+        Assert.assertEquals(ErrorValue.VALUE, context.error());
+        Assert.assertEquals(ErrorValue.VALUE, expression.value(state));
+    }
+
+    @Test
+    public void testDivideByZero() throws TypeError {
+        Expression expression = Arithmetic.divide(args(new Constant(1), new Constant(0)));
+        expression.evalLong(context);
+        Assert.assertEquals(ErrorValue.DIV_ZERO, context.error());
+        Assert.assertEquals(ErrorValue.DIV_ZERO, expression.value(state));
+    }
+
+    @Test
+    public void testFirstErrorKept() throws TypeError {
+        Expression expression = Arithmetic.divide(args(new Constant(1), new Constant(0),
+                new Reference("y")));
+        expression.evalLong(context);
+        Assert.assertEquals(ErrorValue.VALUE, context.error());
+        Assert.assertEquals(ErrorValue.VALUE, expression.value(state));
+    }
+
+    @Test
+    public void testDependenciesComputedOnce() {
+        Expression expression = Arithmetic.plus(args(new Reference("A1"),
+                Arithmetic.times(args(new Reference("B1"), new Constant(2))),
+                new Reference("A1")));
+        Assert.assertEquals(Set.of("A1", "B1"), expression.dependencies());
+        Assert.assertSame(expression.dependencies(), expression.dependencies());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testDependenciesUnmodifiable() {
+        Arithmetic.plus(args(new Reference("A1"))).dependencies().add("B1");
+    }
+
+    @Test
+    public void testStructuralEquality() {
+        Expression first = Arithmetic.plus(args(new Reference("A1"), new Constant(1)));
+        Expression second = Arithmetic.plus(args(new Reference("A1"), new Constant(1)));
+        Assert.assertEquals(first, second);
+        Assert.assertEquals(first.hashCode(), second.hashCode());
+        Assert.assertNotEquals(first, Arithmetic.minus(args(new Reference("A1"), new Constant(1))));
+        Assert.assertNotEquals(first, Arithmetic.plus(args(new Constant(1), new Reference("A1"))));
+    }
+
+    @Test
+    public void testSpecialisedShapes() throws TypeError {
+        state.put("x", new Constant(6));
+        state.put("y", new Constant(4));
+        state.put("z", new Constant(-3));
+        Expression[][] shapes = {
+            args(new Reference("x"), new Reference("y")),
+            args(new Reference("x"), new Constant(2)),
+            args(new Constant(2), new Reference("y")),
+            args(new Reference("x"), new Reference("y"), new Reference("z")),
+        };
+        for (Expression[] shape : shapes) {
+            for (Arithmetic expression : new Arithmetic[] {Arithmetic.plus(shape),
+                    Arithmetic.times(shape)}) {
+                Arithmetic general = expression.getOperator().equals("+")
+                        ? new Plus(shape) : new Times(shape);
+                context.reset();
+                Assert.assertEquals(general.evalLong(context), expression.evalLong(context));
+                Assert.assertFalse(context.failed());
+                Assert.assertEquals(general.value(state), expression.value(state));
+                Assert.assertEquals(general, expression);
+                Assert.assertEquals(general.hashCode(), expression.hashCode());
+            }
+        }
+        Assert.assertTrue(Arithmetic.plus(shapes[0]) instanceof PlusReferences);
+        Assert.assertTrue(Arithmetic.plus(shapes[1]) instanceof PlusConstant);
+        Assert.assertTrue(Arithmetic.times(shapes[2]) instanceof TimesConstant);
+        Assert.assertTrue(Arithmetic.plus(shapes[3]) instanceof SumReferences);
+    }
+
+    @Test
+    public void testSpecialisedShapesPropagateErrors() throws TypeError {
+        state.put("x", ErrorValue.DIV_ZERO);
+        Expression[] expressions = {
+            Arithmetic.plus(args(new Reference("x"), new Reference("missing"))),
+            Arithmetic.plus(args(new Constant(1), new Reference("x"))),
+            Arithmetic.times(args(new Reference("x"), new Constant(2))),
+            Arithmetic.plus(args(new Reference("missing"), new Reference("x"),
+                    new Reference("x"))),
+        };
+        ErrorValue[] errors = {ErrorValue.DIV_ZERO, ErrorValue.DIV_ZERO, ErrorValue.DIV_ZERO,
+            ErrorValue.VALUE};
+        for (int i = 0; i < expressions.length; i++) {
+            context.reset();
+            expressions[i].evalLong(context);
+            Assert.assertEquals(errors[i], context.error());
+            Assert.assertEquals(errors[i], expressions[i].value(state));
+        }
+    }
+}
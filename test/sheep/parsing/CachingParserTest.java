@@ -0,0 +1,56 @@
+package sheep.parsing;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import sheep.expression.CoreFactory;
+import sheep.expression.Expression;
+
+/**
+ * Test class for caching parser.
+ */
+public class CachingParserTest {
+
+    private CachingParser parser;
+
+    @Before
+    public void setUp() {
+        parser = new CachingParser(new SimpleParser(new CoreFactory()), 2);
+    }
+
+    @Test
+    public void testSameInputShared() throws ParseException {
+        Expression first = parser.parse("A1 + 1");
+        Expression second = parser.parse("  A1 + 1 ");
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, parser.hits());
+        Assert.assertEquals(1, parser.misses());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() throws ParseException {
+        Expression zero = parser.parse("0");
+        parser.parse("1");
+        parser.parse("0");
+        parser.parse("2");
+        Assert.assertEquals(2, parser.size());
+        Assert.assertSame(zero, parser.parse("0"));
+        parser.parse("1");
+        Assert.assertEquals(2, parser.hits());
+        Assert.assertEquals(4, parser.misses());
+    }
+
+    @Test
+    public void testFailuresNotCached() {
+        for (int i = 0; i < 2; i++) {
+            try {
+                parser.parse("1 +");
+                Assert.fail();
+            } catch (ParseException expected) {
+                // expected
+            }
+        }
+        Assert.assertEquals(0, parser.size());
+        Assert.assertEquals(2, parser.misses());
+    }
+}
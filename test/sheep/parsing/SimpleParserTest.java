@@ -0,0 +1,90 @@
+package sheep.parsing;
+
+import org.junit.Assert;
+import org.junit.Test;
+import sheep.expression.CoreFactory;
+import sheep.expression.Expression;
+import sheep.expression.TypeError;
+import sheep.expression.basic.Constant;
+import sheep.expression.basic.Nothing;
+import sheep.expression.basic.Reference;
+
+import java.util.HashMap;
+
+/**
+ * Test class for simple parser.
+ */
+public class SimpleParserTest {
+
+    private final Parser parser = new SimpleParser(new CoreFactory());
+
+    private long evaluate(String input) throws ParseException, TypeError {
+        return parser.parse(input).value(new HashMap<>()).value();
+    }
+
+    @Test
+    public void testEmpty() throws ParseException {
+        Assert.assertTrue(parser.parse("   ") instanceof Nothing);
+    }
+
+    @Test
+    public void testConstant() throws ParseException {
+        Assert.assertEquals(new Constant(42), parser.parse(" 42 "));
+        Assert.assertEquals(new Constant(-7), parser.parse("-7"));
+    }
+
+    @Test
+    public void testReference() throws ParseException {
+        Assert.assertEquals(new Reference("A1"), parser.parse("A1"));
+        Assert.assertEquals(new Reference("life"), parser.parse("life"));
+    }
+
+    @Test
+    public void testWithoutSpaces() throws ParseException, TypeError {
+        Assert.assertEquals(9, evaluate("4+5"));
+        Assert.assertEquals(14, evaluate("2+3*4"));
+    }
+
+    @Test
+    public void testPrecedence() throws ParseException, TypeError {
+        Assert.assertEquals(6, evaluate("10 - 3 + 1 - 2"));
+        Assert.assertEquals(1, evaluate("1 + 1 = 2"));
+        Assert.assertEquals(1, evaluate("1 < 2 < 3"));
+        Assert.assertEquals(6, evaluate("3 * 5 / 2"));
+    }
+
+    @Test
+    public void testParentheses() throws ParseException, TypeError {
+        Assert.assertEquals(20, evaluate("(1 + 4) * 4"));
+        Assert.assertEquals(4, evaluate("5 - (2 - 1)"));
+    }
+
+    @Test
+    public void testRenderRoundTrip() throws ParseException, TypeError {
+        for (String input : new String[] {"(1 + 4) * 4", "5 - (2 - 1)", "A1 + A2 - 3", "1 - -2"}) {
+            Expression parsed = parser.parse(input);
+            Assert.assertEquals(input, parsed.render());
+            Assert.assertEquals(parsed.render(), parser.parse(parsed.render()).render());
+        }
+    }
+
+    @Test(expected = ParseException.class)
+    public void testMissingOperand() throws ParseException {
+        parser.parse("1 +");
+    }
+
+    @Test(expected = ParseException.class)
+    public void testUnbalanced() throws ParseException {
+        parser.parse("(1 + 2");
+    }
+
+    @Test(expected = ParseException.class)
+    public void testInvalidCharacter() throws ParseException {
+        parser.parse("1 % 2");
+    }
+
+    @Test(expected = ParseException.class)
+    public void testTooLarge() throws ParseException {
+        parser.parse("99999999999999999999");
+    }
+}
@@ -56,4 +56,62 @@ public class CellLocationTest {
         CellLocation A = new CellLocation(3, 3);
         Assert.assertEquals("C3", A.toString());
     }
+
+    @Test
+    public void testPackedKey() {
+        CellLocation location = new CellLocation(123456, 7);
+        long key = location.key();
+        Assert.assertEquals(123456, CellLocation.rowOf(key));
+        Assert.assertEquals(7, CellLocation.columnOf(key));
+        Assert.assertEquals(location, CellLocation.of(key));
+    }
+
+    @Test
+    public void testInterned() {
+        Assert.assertSame(CellLocation.of(3, 4), CellLocation.of(3, 4));
+        Assert.assertEquals(new CellLocation(3, 4), CellLocation.of(3, 4));
+    }
+
+    @Test
+    public void testHashCodeDistinctInFirstRowAndColumn() {
+        Assert.assertNotEquals(new CellLocation(0, 1).hashCode(), new CellLocation(0, 2).hashCode());
+        Assert.assertNotEquals(new CellLocation(1, 0).hashCode(), new CellLocation(2, 0).hashCode());
+    }
+
+    @Test
+    public void testMaybeReferenceMultipleLetters() {
+        Assert.assertEquals(Optional.of(new CellLocation(5, 26)), CellLocation.maybeReference("AA5"));
+        Assert.assertEquals(Optional.of(new CellLocation(1, 701)), CellLocation.maybeReference("ZZ1"));
+        Assert.assertEquals(Optional.of(new CellLocation(9, 16383)),
+                CellLocation.maybeReference("XFD9"));
+    }
+
+    @Test
+    public void testMaybeReferenceInvalid() {
+        Assert.assertEquals(Optional.empty(), CellLocation.maybeReference(""));
+        Assert.assertEquals(Optional.empty(), CellLocation.maybeReference("A"));
+        Assert.assertEquals(Optional.empty(), CellLocation.maybeReference("12"));
+        Assert.assertEquals(Optional.empty(), CellLocation.maybeReference("a1"));
+        Assert.assertEquals(Optional.empty(), CellLocation.maybeReference("A1B"));
+        Assert.assertEquals(Optional.empty(), CellLocation.maybeReference("life"));
+        Assert.assertEquals(Optional.empty(), CellLocation.maybeReference("A99999999999"));
+    }
+
+    @Test
+    public void testToStringMultipleLetters() {
+        Assert.assertEquals("Z3", new CellLocation(3, 25).toString());
+        Assert.assertEquals("AA3", new CellLocation(3, 26).toString());
+        Assert.assertEquals("ZZ0", new CellLocation(0, 701).toString());
+        Assert.assertEquals("AAA0", new CellLocation(0, 702).toString());
+        Assert.assertEquals("XFD12", new CellLocation(12, 16383).toString());
+    }
+
+    @Test
+    public void testRoundTrip() {
+        for (int column = 0; column < 20000; column += 7) {
+            CellLocation location = new CellLocation(column, column);
+            Assert.assertEquals(Optional.of(location),
+                    CellLocation.maybeReference(location.toString()));
+        }
+    }
 }
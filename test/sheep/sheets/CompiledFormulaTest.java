@@ -0,0 +1,141 @@
+package sheep.sheets;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import sheep.expression.CoreFactory;
+import sheep.expression.Expression;
+import sheep.expression.InvalidExpression;
+import sheep.parsing.SimpleParser;
+
+/**
+ * Test class for compiled formulas, comparing a compiling sheet against a plain one.
+ */
+public class CompiledFormulaTest {
+
+    private Sheet plain;
+    private Sheet compiled;
+
+    private Sheet create() {
+        CoreFactory factory = new CoreFactory();
+        return new SheetBuilder(new SimpleParser(factory), factory.createEmpty())
+                .includeBuiltIn("life", factory.createConstant(42))
+                .empty(10, 5);
+    }
+
+    @Before
+    public void setUp() {
+        plain = create();
+        compiled = create();
+        compiled.setCompiling(true);
+    }
+
+    private void update(int row, int column, String input) {
+        plain.update(row, column, input);
+        compiled.update(row, column, input);
+    }
+
+    private void assertSame(int row, int column) {
+        Assert.assertEquals(plain.valueAt(row, column).getContent(),
+                compiled.valueAt(row, column).getContent());
+        Assert.assertEquals(plain.formulaAt(row, column).getContent(),
+                compiled.formulaAt(row, column).getContent());
+    }
+
+    @Test
+    public void testArithmetic() {
+        update(0, 0, "7");
+        update(0, 1, "A0 * 3 - 4 / 2 + life");
+        update(0, 2, "(B0 - A0) * (B0 + 100000000000000000)");
+        assertSame(0, 1);
+        assertSame(0, 2);
+        Assert.assertEquals("61", compiled.valueAt(0, 1).getContent());
+    }
+
+    @Test
+    public void testComparisons() {
+        update(0, 0, "1");
+        update(0, 1, "A0 < 2");
+        update(0, 2, "A0 = 2");
+        update(0, 3, "A0 < B0");
+        assertSame(0, 1);
+        assertSame(0, 2);
+        assertSame(0, 3);
+    }
+
+    @Test
+    public void testErrors() {
+        update(0, 0, "0");
+        update(0, 1, "5 / A0");
+        update(0, 2, "B0 + 1");
+        update(0, 3, "missing + 1");
+        assertSame(0, 1);
+        assertSame(0, 2);
+        assertSame(0, 3);
+        Assert.assertEquals("#DIV/0!", compiled.valueAt(0, 2).getContent());
+    }
+
+    @Test
+    public void testFilledColumn() {
+        update(0, 0, "1");
+        for (int row = 1; row < 10; row++) {
+            update(row, 0, "A" + (row - 1) + " * 2");
+        }
+        update(0, 0, "3");
+        for (int row = 0; row < 10; row++) {
+            assertSame(row, 0);
+        }
+        Assert.assertEquals("1536", compiled.valueAt(9, 0).getContent());
+        Assert.assertTrue(compiled.storedFormulaAt(1, 0) instanceof CompiledFormula);
+        Assert.assertSame(compiled.storedFormulaAt(1, 0), compiled.storedFormulaAt(9, 0));
+    }
+
+    @Test
+    public void testCompile() throws InvalidExpression {
+        CoreFactory factory = new CoreFactory();
+        Assert.assertNull(CompiledFormula.compile(factory.createConstant(1)));
+        CompiledFormula formula = CompiledFormula.compile(factory.createOperator("+",
+                new Expression[]{factory.createConstant(1),
+                        factory.createReference("A0")}));
+        Assert.assertNotNull(formula);
+        Assert.assertEquals(3, formula.size());
+        Assert.assertEquals("1 + A0", formula.render());
+    }
+
+    @Test
+    public void testTierUp() {
+        compiled.setTierUpThreshold(2);
+        update(0, 0, "0");
+        update(1, 0, "A0 * 3 - life / 2");
+        update(2, 0, "A1 / A0 + 1");
+        update(3, 0, "A0 < A1");
+        Assert.assertEquals(0, compiled.getCompiledCells());
+        for (int value = 1; value < 4; value++) {
+            update(0, 0, Integer.toString(value));
+            for (int row = 0; row < 4; row++) {
+                assertSame(row, 0);
+            }
+        }
+        Assert.assertEquals(3, compiled.getCompiledCells());
+        update(0, 0, "0");
+        for (int row = 0; row < 4; row++) {
+            assertSame(row, 0);
+        }
+        Assert.assertEquals("#DIV/0!", compiled.valueAt(2, 0).getContent());
+        update(3, 0, "5");
+        Assert.assertEquals(2, compiled.getCompiledCells());
+        update(4, 0, "A3 * 3 - life / 2");
+        Assert.assertEquals(3, compiled.getCompiledCells());
+    }
+
+    @Test
+    public void testNoTierUpByDefault() {
+        update(0, 0, "1");
+        update(1, 0, "A0 + 1");
+        for (int value = 0; value < 10; value++) {
+            update(0, 0, Integer.toString(value));
+        }
+        Assert.assertEquals(0, compiled.getCompiledCells());
+        Assert.assertEquals("10", compiled.valueAt(1, 0).getContent());
+    }
+}
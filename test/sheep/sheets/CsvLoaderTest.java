@@ -0,0 +1,91 @@
+package sheep.sheets;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import sheep.core.UpdateResponse;
+import sheep.expression.CoreFactory;
+import sheep.parsing.SimpleParser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Test class for CSV loader.
+ */
+public class CsvLoaderTest {
+
+    private Sheet sheet;
+
+    @Before
+    public void setUp() {
+        CoreFactory factory = new CoreFactory();
+        sheet = new SheetBuilder(new SimpleParser(factory), factory.createEmpty())
+                .empty(10, 5);
+    }
+
+    private Path write(String contents) throws IOException {
+        Path path = Files.createTempFile("sheet", ".csv");
+        path.toFile().deleteOnExit();
+        Files.writeString(path, contents, StandardCharsets.UTF_8);
+        return path;
+    }
+
+    @Test
+    public void testNumbersAndFormulas() throws IOException {
+        UpdateResponse response = CsvLoader.csv(sheet).load(write("1,2,A0 + B0\r\n-4, 5 ,\n"));
+        Assert.assertTrue(response.isSuccess());
+        Assert.assertEquals("3", sheet.valueAt(0, 2).getContent());
+        Assert.assertEquals("-4", sheet.valueAt(1, 0).getContent());
+        Assert.assertEquals("5", sheet.valueAt(1, 1).getContent());
+        Assert.assertEquals("", sheet.valueAt(1, 2).getContent());
+    }
+
+    @Test
+    public void testDependentsRecalculated() throws IOException {
+        sheet.update(5, 0, "A0 * 10");
+        sheet.valueAt(5, 0);
+        CsvLoader.tsv(sheet).load(write("7\t8"));
+        Assert.assertEquals("70", sheet.valueAt(5, 0).getContent());
+    }
+
+    @Test
+    public void testQuotedFields() throws IOException {
+        CsvLoader.csv(sheet).load(write("\"1 + 2\",\"4\"\n"));
+        Assert.assertEquals("3", sheet.valueAt(0, 0).getContent());
+        Assert.assertEquals("4", sheet.valueAt(0, 1).getContent());
+    }
+
+    @Test
+    public void testFailuresSkipped() throws IOException {
+        UpdateResponse response = CsvLoader.csv(sheet).load(write("1,1 +,3\n"));
+        Assert.assertFalse(response.isSuccess());
+        Assert.assertEquals("1 fields could not be loaded, the first: Unable to parse: [1 +] at B0",
+                response.getMessage());
+        Assert.assertEquals("3", sheet.valueAt(0, 2).getContent());
+    }
+
+    @Test
+    public void testParallelUpdateAfterLoad() throws IOException {
+        CoreFactory factory = new CoreFactory();
+        Sheet parallel = new SheetBuilder(new SimpleParser(factory), factory.createEmpty())
+                .empty(4000, 4);
+        parallel.setParallelRecalculation(ForkJoinPool.commonPool(), 1);
+        StringBuilder contents = new StringBuilder("1,,1\n");
+        for (int row = 1; row < 2000; row++) {
+            contents.append(",,C").append(row - 1).append(" + 1\n");
+        }
+        for (int row = 2000; row < 4000; row++) {
+            contents.append(",,,C1999 + A0\n");
+        }
+        Assert.assertTrue(CsvLoader.csv(parallel).load(write(contents.toString())).isSuccess());
+        parallel.update(0, 0, "2");
+        Assert.assertEquals("2000", parallel.valueAt(1999, 2).getContent());
+        for (int row = 2000; row < 4000; row++) {
+            Assert.assertEquals("2002", parallel.valueAt(row, 3).getContent());
+        }
+    }
+}
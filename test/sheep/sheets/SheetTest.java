@@ -0,0 +1,420 @@
+package sheep.sheets;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import sheep.core.CellEdit;
+import sheep.core.UpdateResponse;
+import sheep.expression.CoreFactory;
+import sheep.expression.Expression;
+import sheep.expression.TypeError;
+import sheep.expression.arithmetic.Arithmetic;
+import sheep.expression.basic.Constant;
+import sheep.parsing.SimpleParser;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Test class for sheet.
+ */
+public class SheetTest {
+
+    private Sheet sheet;
+
+    private ForkJoinPool pool;
+
+    @Before
+    public void setUp() {
+        CoreFactory factory = new CoreFactory();
+        sheet = new SheetBuilder(new SimpleParser(factory), factory.createEmpty())
+                .empty(10, 5);
+        pool = new ForkJoinPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testUsedByDirect() {
+        sheet.update(0, 1, "A0 + 1");
+        Assert.assertEquals(Set.of(new CellLocation(0, 1)), sheet.usedBy(new CellLocation(0, 0)));
+    }
+
+    @Test
+    public void testUsedByTransitive() {
+        sheet.update(0, 1, "A0 + 1");
+        sheet.update(0, 2, "B0 + 1");
+        Assert.assertEquals(Set.of(new CellLocation(0, 1), new CellLocation(0, 2)),
+                sheet.usedBy(new CellLocation(0, 0)));
+    }
+
+    @Test
+    public void testUsedByDoesNotAccumulate() {
+        sheet.update(0, 1, "A0 + 1");
+        sheet.update(1, 1, "A1 + 1");
+        sheet.usedBy(new CellLocation(0, 0));
+        Assert.assertEquals(Set.of(new CellLocation(1, 1)), sheet.usedBy(new CellLocation(1, 0)));
+    }
+
+    @Test
+    public void testUsedByAfterReplace() {
+        sheet.update(0, 1, "A0 + 1");
+        sheet.update(0, 1, "5");
+        Assert.assertTrue(sheet.usedBy(new CellLocation(0, 0)).isEmpty());
+    }
+
+    @Test
+    public void testFormulaKeptSeparateFromValue() {
+        sheet.update(0, 0, "2");
+        sheet.update(1, 0, "A0 + 1");
+        Assert.assertEquals("A0 + 1", sheet.formulaAt(1, 0).getContent());
+        Assert.assertEquals("3", sheet.valueAt(1, 0).getContent());
+    }
+
+    @Test
+    public void testChainRecalculated() {
+        sheet.update(0, 0, "1");
+        sheet.update(1, 0, "A0 + 1");
+        sheet.update(2, 0, "A1 + 1");
+        sheet.update(0, 0, "10");
+        Assert.assertEquals(new Constant(12), sheet.valueAt(new CellLocation(2, 0)));
+    }
+
+    @Test
+    public void testDiamondEvaluatedOnce() throws TypeError {
+        Counting counting = new Counting("B0", "C0");
+        sheet.update(0, 0, "1");
+        sheet.update(0, 1, "A0 + 1");
+        sheet.update(0, 2, "A0 + 2");
+        sheet.update(new CellLocation(0, 3), counting);
+        counting.count = 0;
+        sheet.update(0, 0, "5");
+        Assert.assertEquals(1, counting.count);
+        Assert.assertEquals(new Constant(13), sheet.valueAt(new CellLocation(0, 3)));
+    }
+
+    @Test
+    public void testParallelRecalculationMatchesSequential() {
+        CoreFactory factory = new CoreFactory();
+        Sheet parallel = new SheetBuilder(new SimpleParser(factory), factory.createEmpty())
+                .empty(40, 20);
+        parallel.setParallelRecalculation(pool, 2);
+        Sheet sequential = new SheetBuilder(new SimpleParser(factory), factory.createEmpty())
+                .empty(40, 20);
+        for (Sheet each : new Sheet[] {parallel, sequential}) {
+            for (int column = 0; column < 20; column++) {
+                each.update(0, column, "1");
+            }
+            for (int row = 1; row < 40; row++) {
+                each.update(row, 0, "A" + (row - 1) + " + 1");
+                for (int column = 1; column < 20; column++) {
+                    String above = new CellLocation(row - 1, column).toString();
+                    each.update(row, column, above + " + A" + (row - 1));
+                }
+            }
+            each.update(0, 0, "3");
+        }
+        for (int row = 0; row < 40; row++) {
+            for (int column = 0; column < 20; column++) {
+                Assert.assertEquals(sequential.valueAt(row, column).getContent(),
+                        parallel.valueAt(row, column).getContent());
+            }
+        }
+        Assert.assertEquals("42", parallel.valueAt(39, 0).getContent());
+    }
+
+    @Test
+    public void testBuiltInResolved() {
+        CoreFactory factory = new CoreFactory();
+        Sheet withLife = new SheetBuilder(new SimpleParser(factory), factory.createEmpty())
+                .includeBuiltIn("life", factory.createConstant(42))
+                .empty(5, 5);
+        withLife.update(0, 0, "life + 1");
+        Assert.assertEquals("43", withLife.valueAt(0, 0).getContent());
+    }
+
+    @Test
+    public void testStateEnumeratesBuiltInsAndCells() {
+        sheet.update(0, 0, "1");
+        sheet.update(0, 1, "A0 + 1");
+        SheetState state = new SheetState(sheet,
+                new SymbolTable(Map.of("life", new Constant(42))));
+        Assert.assertEquals(3, state.size());
+        Assert.assertFalse(state.isEmpty());
+        Assert.assertTrue(state.containsValue(new Constant(2)));
+        Assert.assertEquals(Map.of("life", new Constant(42), "A0", new Constant(1),
+                "B0", new Constant(2)), state);
+        Assert.assertEquals(new Constant(2), state.get("B0"));
+    }
+
+    @Test
+    public void testStateResolvesRelativeIdentifiers() {
+        sheet.update(0, 0, "7");
+        SheetState state = new SheetState(sheet, new SymbolTable(Map.of())).at(1, 1);
+        Assert.assertEquals(new Constant(7), state.get("R[-1]C[-1]"));
+        for (String invalid : new String[] {"R[-2]C[0]", "R[]C[0]", "R[-]C[0]", "R[0]C[x]",
+            "R[0]C[0", "R[0]X[0]", "R[99999999999]C[0]"}) {
+            Assert.assertNull(invalid, state.get(invalid));
+        }
+    }
+
+    @Test
+    public void testBoundBuiltInRendersByName() {
+        CoreFactory factory = new CoreFactory();
+        Sheet withLife = new SheetBuilder(new SimpleParser(factory), factory.createEmpty())
+                .includeBuiltIn("life", factory.createConstant(42))
+                .includeBuiltIn("answer", factory.createConstant(2))
+                .empty(5, 5);
+        withLife.update(0, 0, "3");
+        withLife.update(1, 0, "life * A0 - answer");
+        withLife.setCompiling(true);
+        withLife.update(2, 0, "answer + life");
+        Assert.assertEquals("life * A0 - answer", withLife.formulaAt(1, 0).getContent());
+        Assert.assertEquals("124", withLife.valueAt(1, 0).getContent());
+        Assert.assertEquals("44", withLife.valueAt(2, 0).getContent());
+    }
+
+    @Test
+    public void testBuiltInsNotAffectedByLaterIncludes() {
+        CoreFactory factory = new CoreFactory();
+        SheetBuilder builder = new SheetBuilder(new SimpleParser(factory), factory.createEmpty());
+        Sheet before = builder.empty(5, 5);
+        builder.includeBuiltIn("life", factory.createConstant(42));
+        before.update(0, 0, "life");
+        Assert.assertEquals("life", before.valueAt(0, 0).getContent());
+    }
+
+    @Test
+    public void testValueServedFromCache() throws TypeError {
+        Counting counting = new Counting("A0");
+        sheet.update(0, 0, "1");
+        sheet.update(new CellLocation(0, 1), counting);
+        sheet.update(1, 1, "B0 + 1");
+        sheet.update(2, 1, "B0 + B1");
+        sheet.valueAt(0, 1);
+        sheet.valueAt(new CellLocation(0, 1));
+        Assert.assertEquals(1, counting.count);
+        Assert.assertEquals("3", sheet.valueAt(2, 1).getContent());
+    }
+
+    @Test
+    public void testUnevaluatedCellShowsError() {
+        sheet.update(0, 1, "A0 + 1");
+        Assert.assertEquals("#VALUE!", sheet.valueAt(0, 1).getContent());
+        Assert.assertEquals("A0 + 1", sheet.formulaAt(0, 1).getContent());
+    }
+
+    @Test
+    public void testErrorsPropagate() {
+        sheet.update(0, 0, "0");
+        sheet.update(0, 1, "5 / A0");
+        sheet.update(0, 2, "B0 + 1");
+        Assert.assertEquals("#DIV/0!", sheet.valueAt(0, 1).getContent());
+        Assert.assertEquals("#DIV/0!", sheet.valueAt(0, 2).getContent());
+        sheet.update(0, 0, "5");
+        Assert.assertEquals("2", sheet.valueAt(0, 2).getContent());
+    }
+
+    @Test
+    public void testDeepChain() {
+        CoreFactory factory = new CoreFactory();
+        Sheet tall = new SheetBuilder(new SimpleParser(factory), factory.createEmpty())
+                .empty(100000, 2);
+        tall.update(0, 1, "0");
+        for (int row = 1; row < 100000; row++) {
+            tall.update(row, 1, "B" + (row - 1) + " + 1");
+        }
+        tall.update(0, 1, "1");
+        Assert.assertEquals("100000", tall.valueAt(99999, 1).getContent());
+    }
+
+    @Test
+    public void testCycleRejected() {
+        sheet.update(1, 0, "A0 + 1");
+        UpdateResponse response = sheet.update(0, 0, "A1");
+        Assert.assertFalse(response.isSuccess());
+        Assert.assertEquals("", sheet.formulaAt(0, 0).getContent());
+        Assert.assertTrue(sheet.usedBy(new CellLocation(1, 0)).isEmpty());
+    }
+
+    @Test
+    public void testSelfReferenceRejected() {
+        Assert.assertFalse(sheet.update(0, 0, "A0 + 1").isSuccess());
+    }
+
+    @Test
+    public void testLongCycleRejected() {
+        sheet.update(1, 0, "A0");
+        sheet.update(2, 0, "A1");
+        sheet.update(3, 0, "A2");
+        Assert.assertFalse(sheet.update(0, 0, "A3 + 1").isSuccess());
+        Assert.assertTrue(sheet.update(0, 0, "B3 + 1").isSuccess());
+    }
+
+    @Test
+    public void testUpdateAll() {
+        List<UpdateResponse> responses = sheet.updateAll(List.of(
+                new CellEdit(1, 0, "A0 + 1"),
+                new CellEdit(2, 0, "A1 + A0"),
+                new CellEdit(0, 0, "2")));
+        for (UpdateResponse response : responses) {
+            Assert.assertTrue(response.isSuccess());
+        }
+        Assert.assertEquals("5", sheet.valueAt(2, 0).getContent());
+    }
+
+    @Test
+    public void testUpdateAllEvaluatesOnce() throws TypeError {
+        Counting counting = new Counting("A0", "A1");
+        sheet.update(new CellLocation(0, 1), counting);
+        counting.count = 0;
+        sheet.updateAll(List.of(new CellEdit(0, 0, "1"), new CellEdit(1, 0, "2")));
+        Assert.assertEquals(1, counting.count);
+        Assert.assertEquals("3", sheet.valueAt(0, 1).getContent());
+    }
+
+    @Test
+    public void testUpdateAllIsAtomic() {
+        sheet.update(0, 0, "1");
+        List<UpdateResponse> responses = sheet.updateAll(List.of(
+                new CellEdit(0, 0, "5"),
+                new CellEdit(1, 0, "B0"),
+                new CellEdit(0, 1, "A1")));
+        Assert.assertFalse(responses.get(0).isSuccess());
+        Assert.assertFalse(responses.get(2).isSuccess());
+        Assert.assertEquals("1", sheet.valueAt(0, 0).getContent());
+        Assert.assertEquals("", sheet.formulaAt(1, 0).getContent());
+        Assert.assertTrue(sheet.usedBy(new CellLocation(0, 1)).isEmpty());
+    }
+
+    @Test
+    public void testSparseSheet() {
+        CoreFactory factory = new CoreFactory();
+        Sheet large = new SheetBuilder(new SimpleParser(factory), factory.createEmpty())
+                .sparse(1000000, 200);
+        large.update(999999, 3, "7");
+        large.update(5, 2, "D999999 * 2");
+        large.update(999999, 3, "8");
+        Assert.assertEquals(1000000, large.getRows());
+        Assert.assertEquals("16", large.valueAt(5, 2).getContent());
+        Assert.assertEquals("D999999 * 2", large.formulaAt(5, 2).getContent());
+        Assert.assertEquals("", large.valueAt(500000, 150).getContent());
+    }
+
+    @Test
+    public void testClearingSparseCellsAllocatesNothing() {
+        CoreFactory factory = new CoreFactory();
+        TiledStorage storage = new TiledStorage(1000000, 200);
+        Sheet large = new Sheet(new SimpleParser(factory), new SymbolTable(Map.of()),
+                factory.createEmpty(), 1000000, 200, storage);
+        large.update(500000, 150, "");
+        Assert.assertEquals(0, storage.allocatedTiles());
+        large.update(700000, 20, "5");
+        large.update(700001, 20, "U700000 + 1");
+        Assert.assertEquals(1, storage.allocatedTiles());
+        large.update(700001, 20, "");
+        large.update(700000, 20, "");
+        Assert.assertEquals(0, storage.allocatedTiles());
+        Assert.assertEquals("", large.valueAt(700001, 20).getContent());
+    }
+
+    @Test
+    public void testFilledColumnSharesFormula() {
+        sheet.update(0, 0, "1");
+        sheet.update(1, 0, "1");
+        for (int row = 2; row < 10; row++) {
+            sheet.update(row, 0, "A" + (row - 2) + " + A" + (row - 1));
+        }
+        Assert.assertSame(sheet.storedFormulaAt(2, 0), sheet.storedFormulaAt(9, 0));
+        Assert.assertEquals("A7 + A8", sheet.formulaAt(9, 0).getContent());
+        Assert.assertEquals("55", sheet.valueAt(9, 0).getContent());
+    }
+
+    @Test
+    public void testTemplatesShareSubFormulas() {
+        sheet.update(1, 1, "(A0 + 1) * 2");
+        sheet.update(1, 2, "(B0 + 1) * 3");
+        Arithmetic first = (Arithmetic) sheet.storedFormulaAt(1, 1);
+        Arithmetic second = (Arithmetic) sheet.storedFormulaAt(1, 2);
+        Assert.assertNotSame(first, second);
+        Assert.assertSame(first.argument(0), second.argument(0));
+    }
+
+    @Test
+    public void testOptimizingFactory() {
+        CoreFactory factory = new CoreFactory(true);
+        Sheet optimized = new SheetBuilder(new SimpleParser(factory), factory.createEmpty())
+                .empty(10, 5);
+        optimized.update(0, 0, "2");
+        optimized.update(1, 0, "A0 * (3 + 4) + 0");
+        optimized.update(2, 0, "A1 * (3 + 4) + 0");
+        Assert.assertEquals("A1 * (3 + 4) + 0", optimized.formulaAt(2, 0).getContent());
+        Assert.assertEquals("98", optimized.valueAt(2, 0).getContent());
+    }
+
+    @Test
+    public void testFailedArithmeticEvaluatedOnce() throws Exception {
+        CoreFactory factory = new CoreFactory();
+        Counting counting = new Counting("A0");
+        sheet.update(0, 0, "1");
+        sheet.update(new CellLocation(0, 1), factory.createOperator("/",
+                new Expression[]{counting, factory.createConstant(0)}));
+        sheet.update(1, 1, "B0 + 1");
+        Assert.assertEquals(1, counting.count);
+        Assert.assertEquals("#DIV/0!", sheet.valueAt(0, 1).getContent());
+        Assert.assertEquals("#DIV/0!", sheet.valueAt(1, 1).getContent());
+    }
+
+    @Test
+    public void testUnresolvedReferenceRendersByName() {
+        sheet.update(3, 1, "A2");
+        Assert.assertEquals("A2", sheet.valueAt(3, 1).getContent());
+        Assert.assertEquals("A2", sheet.formulaAt(3, 1).getContent());
+    }
+
+    /**
+     * Sums its references and records how many times it has been evaluated.
+     */
+    private static class Counting extends Expression {
+        private final Set<String> references;
+        private int count = 0;
+
+        Counting(String... references) {
+            this.references = Set.of(references);
+        }
+
+        @Override
+        public Set<String> dependencies() {
+            return references;
+        }
+
+        @Override
+        public long value() throws TypeError {
+            throw new TypeError();
+        }
+
+        @Override
+        public Expression value(Map<String, Expression> state) throws TypeError {
+            count++;
+            long sum = 0;
+            for (String reference : references) {
+                if (!state.containsKey(reference)) {
+                    throw new TypeError();
+                }
+                sum += state.get(reference).value(state).value();
+            }
+            return new Constant(sum);
+        }
+
+        @Override
+        public String render() {
+            return "COUNTING";
+        }
+    }
+}